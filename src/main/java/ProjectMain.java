@@ -1,5 +1,6 @@
 import extra.RankRelatedEntitiesInContext;
 import experiments.*;
+import lucene.Index;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
@@ -8,12 +9,15 @@ import org.apache.lucene.search.similarities.LMDirichletSimilarity;
 import org.apache.lucene.search.similarities.LMJelinekMercerSimilarity;
 import org.apache.lucene.search.similarities.Similarity;
 import org.jetbrains.annotations.NotNull;
+import random.BuildPseudoDocuments;
 import random.GetEntities;
 import random.GetSWATEntities;
+import random.PrecomputeRelatedness;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.Arrays;
 import java.util.Scanner;
 
 /**
@@ -264,6 +268,61 @@ public class ProjectMain {
         }  else if (command.equalsIgnoreCase("--get-swat-ent")) {
             getSwatEnt(args);
 
+        } else if (command.equalsIgnoreCase("--precompute-rel")) {
+            if (args[1].equalsIgnoreCase("--use")) {
+                String use =
+                        "String indexDir: Path to the paragraph index directory.\n" +
+                        "String pageIndexDir: Path to the page index directory (none to skip the page entities).\n" +
+                        "String mainDir: Path to the top-level aspect-linking directory.\n" +
+                        "String dataDir: Path to the data directory within the mainDir.\n" +
+                        "String jsonFile: Name of the JSON-L data file (must be within dataDir).\n" +
+                        "String contextEntityFile: Name of the serialized file containing the context entities (must be within dataDir).\n" +
+                        "String matrixDir: Directory to write the relatedness matrices to (use with -Dwat.matrix.dir).\n" +
+                        "String relTypes: Comma-separated list of relatedness measures (mw,jaccard,lm,w2v,cp,ba,pmi).\n" +
+                        "int threads: Maximum number of target entities fetched at a time.\n" +
+                        "Analyzer analyzer: Type of Lucene analyzer to use (English[eng] or Standard[std]).\n" +
+                        "Similarity similarity: Type of Lucene similarity to use (BM25 or LMDS or LMJM).\n" +
+                        "double lambda: To be provided when similarity value chosen is LMJM.\n";
+                System.out.println(use);
+                System.exit(-1);
+            }
+            System.out.println("Precomputing entity relatedness");
+            precomputeRel(args);
+
+        } else if (command.equalsIgnoreCase("--index")) {
+            if (args[1].equalsIgnoreCase("--use")) {
+                String use =
+                        "String cborFile: Path to the paragraph corpus (CBOR) file.\n" +
+                        "String indexDir: Path to the paragraph index directory to create.\n" +
+                        "int threads: Number of indexing threads (each writes its own sub-index, merged at the end).\n" +
+                        "double ramBufferMB: RAM buffer of each writer in MB (e.g., 256).\n" +
+                        "String mergePolicy: Merge policy of the writers (tiered|log|none).\n" +
+                        "Analyzer analyzer: Type of Lucene analyzer to use (English[eng] or Standard[std]).\n";
+                System.out.println(use);
+                System.exit(-1);
+            }
+            System.out.println("Building the paragraph index");
+            index(args);
+
+        } else if (command.equalsIgnoreCase("--build-pseudo-docs")) {
+            if (args[1].equalsIgnoreCase("--use")) {
+                String use =
+                        "String indexDir: Path to the paragraph index directory.\n" +
+                        "String mainDir: Path to the top-level aspect-linking directory.\n" +
+                        "String dataDir: Path to the data directory within the mainDir.\n" +
+                        "String jsonFile: Name of the JSON-L data file (must be within dataDir).\n" +
+                        "String contextEntityFile: Name of the serialized file containing the context entities (must be within dataDir).\n" +
+                        "String storeFile: Path to the pseudo-document store to write (use with -Dpseudo.doc.store).\n" +
+                        "int threads: Maximum number of pseudo-documents built at a time.\n" +
+                        "Analyzer analyzer: Type of Lucene analyzer to use (English[eng] or Standard[std]).\n" +
+                        "Similarity similarity: Type of Lucene similarity to use (BM25 or LMDS or LMJM).\n" +
+                        "double lambda: To be provided when similarity value chosen is LMJM.\n";
+                System.out.println(use);
+                System.exit(-1);
+            }
+            System.out.println("Building pseudo-documents");
+            buildPseudoDocs(args);
+
         } else {
             System.err.println("Wrong command! Try again!");
             System.exit(-1);
@@ -271,6 +330,166 @@ public class ProjectMain {
 
     }
 
+    private static void index(@NotNull String[] args) {
+        String cborFile = args[1];
+        String indexDir = args[2];
+        int threads = Integer.parseInt(args[3]);
+        double ramBufferMB = Double.parseDouble(args[4]);
+        String mergePolicy = args[5];
+        String a = args[6];
+
+        Analyzer analyzer = null;
+
+        switch (a) {
+            case "std" :
+                System.out.println("Analyzer: Standard");
+                analyzer = new StandardAnalyzer();
+                break;
+            case "eng":
+                System.out.println("Analyzer: English");
+                analyzer = new EnglishAnalyzer();
+                break;
+            default:
+                System.out.println("Wrong choice of analyzer! Program ends.");
+                System.exit(1);
+        }
+
+        try {
+            new Index.Build(indexDir, cborFile);
+            int commitEvery = Integer.getInteger("index.checkpoint", 0);
+            Index.Build.Layout layout = Index.Build.Layout.valueOf(
+                    System.getProperty("index.layout", "paragraphs").toUpperCase());
+            if (commitEvery > 0) {
+                Index.Build.createIndexCheckpointed(analyzer, threads, ramBufferMB, mergePolicy, commitEvery, layout);
+            } else {
+                Index.Build.createIndexParallel(analyzer, threads, ramBufferMB, mergePolicy, layout);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+    private static void precomputeRel(@NotNull String[] args) {
+        String indexDir = args[1];
+        String pageIndexDir = args[2];
+        String mainDir = args[3];
+        String dataDir = args[4];
+        String jsonFile = args[5];
+        String contextEntityFile = args[6];
+        String matrixDir = args[7];
+        String relTypes = args[8];
+        int threads = Integer.parseInt(args[9]);
+        String a = args[10];
+        String s = args[11];
+
+        Analyzer analyzer = null;
+        Similarity similarity = null;
+
+        switch (a) {
+            case "std" :
+                System.out.println("Analyzer: Standard");
+                analyzer = new StandardAnalyzer();
+                break;
+            case "eng":
+                System.out.println("Analyzer: English");
+                analyzer = new EnglishAnalyzer();
+                break;
+            default:
+                System.out.println("Wrong choice of analyzer! Program ends.");
+                System.exit(1);
+        }
+
+        switch (s) {
+            case "BM25" :
+            case "bm25":
+                similarity = new BM25Similarity();
+                System.out.println("Similarity: BM25");
+                break;
+            case "LMJM":
+            case "lmjm":
+                System.out.println("Similarity: LMJM");
+                try {
+                    float lambda = Float.parseFloat(args[12]);
+                    System.out.println("Lambda = " + lambda);
+                    similarity = new LMJelinekMercerSimilarity(lambda);
+                } catch (IndexOutOfBoundsException e) {
+                    System.out.println("Missing lambda value for similarity LM-JM");
+                    System.exit(1);
+                }
+                break;
+            case "LMDS":
+            case "lmds":
+                System.out.println("Similarity: LMDS");
+                similarity = new LMDirichletSimilarity();
+                break;
+            default:
+                System.out.println("Wrong choice of similarity! Program end.");
+                System.exit(1);
+        }
+
+        new PrecomputeRelatedness(indexDir, pageIndexDir, mainDir, dataDir, jsonFile, contextEntityFile, matrixDir,
+                Arrays.asList(relTypes.split(",")), threads, analyzer, similarity);
+    }
+    private static void buildPseudoDocs(@NotNull String[] args) {
+        String indexDir = args[1];
+        String mainDir = args[2];
+        String dataDir = args[3];
+        String jsonFile = args[4];
+        String contextEntityFile = args[5];
+        String storeFile = args[6];
+        int threads = Integer.parseInt(args[7]);
+        String a = args[8];
+        String s = args[9];
+
+        Analyzer analyzer = null;
+        Similarity similarity = null;
+
+        switch (a) {
+            case "std" :
+                System.out.println("Analyzer: Standard");
+                analyzer = new StandardAnalyzer();
+                break;
+            case "eng":
+                System.out.println("Analyzer: English");
+                analyzer = new EnglishAnalyzer();
+                break;
+            default:
+                System.out.println("Wrong choice of analyzer! Program ends.");
+                System.exit(1);
+        }
+
+        switch (s) {
+            case "BM25" :
+            case "bm25":
+                similarity = new BM25Similarity();
+                System.out.println("Similarity: BM25");
+                break;
+            case "LMJM":
+            case "lmjm":
+                System.out.println("Similarity: LMJM");
+                try {
+                    float lambda = Float.parseFloat(args[10]);
+                    System.out.println("Lambda = " + lambda);
+                    similarity = new LMJelinekMercerSimilarity(lambda);
+                } catch (IndexOutOfBoundsException e) {
+                    System.out.println("Missing lambda value for similarity LM-JM");
+                    System.exit(1);
+                }
+                break;
+            case "LMDS":
+            case "lmds":
+                System.out.println("Similarity: LMDS");
+                similarity = new LMDirichletSimilarity();
+                break;
+            default:
+                System.out.println("Wrong choice of similarity! Program end.");
+                System.exit(1);
+        }
+
+        new BuildPseudoDocuments(indexDir, mainDir, dataDir, jsonFile, contextEntityFile, storeFile, threads, analyzer,
+                similarity);
+    }
+
     private static void getSwatEnt(@NotNull String[] args) {
         String mainDir = args[1];
         String dataDir = args[2];
@@ -1033,6 +1252,34 @@ public class ProjectMain {
                 "to view a description of the method.");
         System.out.println("Use the --use flag with the option (such as --exp1 --use) " +
                 "to view a description of the command line arguments for the option.");
+        System.out.println("Use \"-Dwat.cache.dir=DIR\" to cache WAT relatedness scores, title IDs and WAT/SWAT annotations on disk across runs.");
+        System.out.println("Use \"-Dapi.rate=N\" to limit WAT/SWAT calls to N requests per second; " +
+                "failed and dropped calls are reported on exit.");
+        System.out.println("Use \"-Dapi.mode=record|replay -Dapi.store=FILE\" to record WAT/SWAT responses and " +
+                "replay them offline (\"-Dapi.replay.latency.ms=N\" adds synthetic latency).");
+        System.out.println("Use \"-Drel.engine=local [-Drel.graph.file=FILE]\" with --exp5 or --exp6 " +
+                "to compute mw/jaccard relatedness from the page index link graph instead of WAT.");
+        System.out.println("Use \"-Dwat.matrix.dir=DIR\" to read relatedness precomputed with --precompute-rel " +
+                "instead of calling WAT.");
+        System.out.println("Use \"-Dindex.checkpoint=N\" with --index to commit every N paragraphs; " +
+                "an interrupted build then resumes from the last commit when run again.");
+        System.out.println("Use \"-Dpseudo.doc.source=postings\" to build pseudo-documents from the first N paragraphs " +
+                "linking to the entity instead of the linking paragraphs among the top-N hits (needs entity postings).");
+        System.out.println("Use \"-Dindex.layout=links\" with --index to write one document per paragraph with " +
+                "the ids of its link targets in \"paraentity\" (replaces the one-document-per-link index).");
+        System.out.println("Use \"-Dpseudo.doc.store=FILE\" to read pseudo-documents built with --build-pseudo-docs " +
+                "instead of building them at run time (only if they were built with the same index, analyzer, " +
+                "similarity and N).");
+        System.out.println("Use \"-Dsearch.threads=N|auto\" to search the segments of the index with N threads " +
+                "(only used without the parallel flag, which already searches many queries at once).");
+        System.out.println("Use \"-Dindex.directory=fs|mmap|nio|simple\" to choose how indexes are opened, " +
+                "\"-Dindex.preload=EXT,...|all\" (e.g., doc,pos,tim,tip,fdt,fdx,cfs) to read index files into the " +
+                "page cache when opened and \"-Dindex.warmup=N|all\" to run N entity queries before scoring.");
+        System.out.println("Use \"-Daspect.index=DIR\" with --exp6 or --exp7 to index all candidate aspects once and score " +
+                "them with corpus-level BM25 statistics instead of those of the candidates of each mention.");
+        System.out.println("Use \"-Dquery.cache.size=N\" to keep the N most recently built entity queries (default 10000).");
+        System.out.println("Use \"-Dresult.cache.size=N\" to keep the hits of the N most recently searched entity " +
+                "queries (default 10000; \"-Dindex.warmup=all\" fills it before scoring).");
     }
     private static void help() {
 
@@ -1055,6 +1302,8 @@ public class ProjectMain {
 
         System.out.println("--exp7 (indexDir|mainDir|dataDir|outputDir|jsonFile|contextEntityFile|useRelatedness|" +
                 "takeKEntities|omitQueryTerms|analyzer|similarity)");
+
+        System.out.println("--index (cborFile|indexDir|threads|ramBufferMB|mergePolicy|analyzer)");
     }
 
 }
@@ -0,0 +1,299 @@
+package api;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ====================================================================================================================
+ * A two-tier cache of entity annotations (the raw responses of WAT or SWAT), keyed by a SHA-256 hash of
+ * (service, request parameters, text). The same passage is therefore annotated only once, no matter how many
+ * mentions or runs it appears in.
+ * (1) Memory tier: Least recently used responses are evicted when their total size exceeds the limit.
+ * (2) Persistent tier (optional): An append-only file of (hash, response) records. Only the offsets of the records
+ *     are kept in memory; a response is read from the file when it is not in the memory tier.
+ * Responses are cached before any filtering (such as the minimum rho of WAT or the salient/all mode of SWAT), so one
+ * entry serves every filter.
+ * ====================================================================================================================
+ * @author Shubham Chatterjee
+ * @version 10/17/2026
+ */
+
+public class AnnotationCache {
+
+    private static final int HASH_SIZE = 32; // Hex digits of the key
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final long maxChars;
+    private final LinkedHashMap<String, String> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryChars = 0L;
+    private final Map<String, Long> offsets = new ConcurrentHashMap<>();
+    private final Path file;
+    private FileChannel channel;
+
+    /**
+     * Constructor for an in-memory cache.
+     * @param maxChars Long Maximum total length of the responses kept in memory.
+     */
+
+    public AnnotationCache(long maxChars) {
+        this.maxChars = maxChars;
+        this.file = null;
+    }
+
+    /**
+     * Constructor for a cache with a persistent tier.
+     * @param maxChars Long Maximum total length of the responses kept in memory.
+     * @param file String Path to the backing file. Created if it does not exist.
+     * @throws IOException If the file could not be opened.
+     */
+
+    public AnnotationCache(long maxChars, @NotNull String file) throws IOException {
+        this.maxChars = maxChars;
+        this.file = Paths.get(file);
+        if (this.file.getParent() != null) {
+            Files.createDirectories(this.file.getParent());
+        }
+        this.channel = FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        index();
+    }
+
+    /**
+     * Open the annotation cache of a service.
+     * The memory tier is bounded by "-Dannotation.cache.mb=N" (default 64).
+     * @param dir String Cache directory. If null or empty, the cache is in memory only.
+     * @param name String Name of the backing file within the directory.
+     * @return AnnotationCache
+     */
+
+    @NotNull
+    public static AnnotationCache open(@Nullable String dir, @NotNull String name) {
+        long maxChars = Long.getLong("annotation.cache.mb", 64L) << 20;
+        if (dir == null || dir.isEmpty()) {
+            return new AnnotationCache(maxChars);
+        }
+        try {
+            AnnotationCache annotationCache = new AnnotationCache(maxChars, dir + "/" + name);
+            Runtime.getRuntime().addShutdownHook(new Thread(annotationCache::close));
+            return annotationCache;
+        } catch (IOException e) {
+            System.err.println("ERROR in AnnotationCache.open(): " + e.getClass().getCanonicalName());
+            return new AnnotationCache(maxChars);
+        }
+    }
+
+    /**
+     * Cache key of a request.
+     * @param service String Name of the service (e.g., "wat" or "swat").
+     * @param params String Request parameters that change the response.
+     * @param text String The text to annotate.
+     * @return String The first 128 bits of the SHA-256 hash, hex-encoded.
+     */
+
+    @NotNull
+    public static String key(@NotNull String service, @NotNull String params, @NotNull String text) {
+        MessageDigest digest = DIGEST.get();
+        digest.reset();
+        digest.update(service.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(params.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        byte[] hash = digest.digest(text.getBytes(StandardCharsets.UTF_8));
+        StringBuilder sb = new StringBuilder(HASH_SIZE);
+        for (int i = 0; i < HASH_SIZE / 2; i++) {
+            byte b = hash[i];
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Look up a response.
+     * @param key String Cache key (see key()).
+     * @return String The cached response, or null if not cached.
+     */
+
+    @Nullable
+    public String get(@NotNull String key) {
+        synchronized (memory) {
+            String response = memory.get(key);
+            if (response != null) {
+                return response;
+            }
+        }
+        Long offset = offsets.get(key);
+        if (offset == null) {
+            return null;
+        }
+        try {
+            String response = read(offset);
+            remember(key, response);
+            return response;
+        } catch (IOException e) {
+            System.err.println("ERROR in AnnotationCache.get(): " + e.getClass().getCanonicalName());
+            return null;
+        }
+    }
+
+    /**
+     * Cache a response.
+     * @param key String Cache key (see key()).
+     * @param response String Response body.
+     */
+
+    public void put(@NotNull String key, @NotNull String response) {
+        if (key.length() != HASH_SIZE) {
+            throw new IllegalArgumentException("Not a cache key: " + key);
+        }
+        remember(key, response);
+        if (channel != null && !offsets.containsKey(key)) {
+            append(key, response);
+        }
+    }
+
+    /**
+     * Number of responses in the persistent tier (or in memory, if there is no persistent tier).
+     * @return Integer
+     */
+
+    public int size() {
+        if (channel != null) {
+            return offsets.size();
+        }
+        synchronized (memory) {
+            return memory.size();
+        }
+    }
+
+    /**
+     * Force pending changes to disk.
+     */
+
+    public synchronized void flush() {
+        if (channel != null) {
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                System.err.println("ERROR in AnnotationCache.flush(): " + e.getClass().getCanonicalName());
+            }
+        }
+    }
+
+    /**
+     * Flush and close the backing file.
+     */
+
+    public synchronized void close() {
+        if (channel != null) {
+            try {
+                channel.force(false);
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("ERROR in AnnotationCache.close(): " + e.getClass().getCanonicalName());
+            }
+            channel = null;
+        }
+    }
+
+    private void remember(@NotNull String key, @NotNull String response) {
+        synchronized (memory) {
+            String old = memory.put(key, response);
+            memoryChars += response.length() - (old != null ? old.length() : 0);
+            Iterator<Map.Entry<String, String>> it = memory.entrySet().iterator();
+            while (memoryChars > maxChars && it.hasNext()) {
+                memoryChars -= it.next().getValue().length();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Read the offsets of all records in the backing file.
+     * A partially written record at the end of the file (from an interrupted run) is cut off.
+     */
+
+    private void index() throws IOException {
+        long size = channel.size();
+        long pos = 0L;
+        ByteBuffer header = ByteBuffer.allocate(HASH_SIZE + 4);
+        while (pos + header.capacity() <= size) {
+            header.clear();
+            readFully(header, pos);
+            header.flip();
+            byte[] hash = new byte[HASH_SIZE];
+            header.get(hash);
+            int length = header.getInt();
+            if (length < 0 || pos + header.capacity() + length > size) {
+                break;
+            }
+            offsets.put(new String(hash, StandardCharsets.US_ASCII), pos);
+            pos += header.capacity() + length;
+        }
+        if (pos < size) {
+            channel.truncate(pos);
+        }
+    }
+
+    @NotNull
+    private String read(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HASH_SIZE + 4);
+        readFully(header, offset);
+        header.flip();
+        header.position(HASH_SIZE);
+        ByteBuffer body = ByteBuffer.allocate(header.getInt());
+        readFully(body, offset + HASH_SIZE + 4);
+        return new String(body.array(), StandardCharsets.UTF_8);
+    }
+
+    private synchronized void append(@NotNull String key, @NotNull String response) {
+        if (channel == null || offsets.containsKey(key)) {
+            return;
+        }
+        byte[] body = response.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(HASH_SIZE + 4 + body.length);
+        record.put(key.getBytes(StandardCharsets.US_ASCII)).putInt(body.length).put(body).flip();
+        try {
+            long pos = channel.size();
+            while (record.hasRemaining()) {
+                channel.write(record, pos + record.position());
+            }
+            offsets.put(key, pos);
+        } catch (IOException e) {
+            System.err.println("ERROR in AnnotationCache.append(): " + e.getClass().getCanonicalName());
+        }
+    }
+
+    private void readFully(@NotNull ByteBuffer buffer, long pos) throws IOException {
+        FileChannel ch = channel;
+        if (ch == null) {
+            throw new IOException("Cache is closed");
+        }
+        while (buffer.hasRemaining()) {
+            if (ch.read(buffer, pos + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+}
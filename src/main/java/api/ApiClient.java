@@ -0,0 +1,613 @@
+package api;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ====================================================================================================================
+ * Shared HTTP client for the api package.
+ * All requests to WAT, SWAT and the Google Knowledge Graph go through a single pooled client, so connections are
+ * kept alive and reused instead of being opened for every call.
+ * Asynchronous requests run on a dedicated executor (not the ForkJoin common pool used by parallel streams) and
+ * return a CompletableFuture, so callers can keep thousands of requests outstanding. The number of requests in flight
+ * per host is bounded; the remaining requests wait in a queue of their host and are handed to the executor when a
+ * request to that host completes, so a busy host never holds executor threads that requests to other hosts could use.
+ * Every host has its own token-bucket rate limiter, circuit breaker and request counters (see ApiStats). Transient
+ * errors (connection errors, timeouts, HTTP 429 and 5xx) are retried with bounded exponential backoff.
+ *
+ * The client is configured with the following system properties:
+ * (1) api.max.connections: Maximum number of pooled connections (default 256).
+ * (2) api.max.per.host: Maximum number of requests in flight per host (default 32).
+ * (3) api.timeout.ms: Connect and read timeout in milliseconds (default 50000).
+ * (4) api.rate: Maximum number of requests per second per host (default 0, i.e., no limit).
+ * (5) api.burst: Maximum number of requests sent at once by the rate limiter (default: the rate).
+ * (6) api.retries: Maximum number of retries of a transient error (default 3).
+ * (7) api.backoff.ms: Delay before the first retry, doubled for every further retry (default 500).
+ * (8) api.backoff.max.ms: Maximum delay between retries (default 8000).
+ * (9) api.breaker.failures: Consecutive failures after which requests to a host fail fast (default 20, 0 to disable).
+ * (10) api.breaker.open.ms: Time requests fail fast before a trial request is sent (default 30000).
+ * (11) api.mode: live (default), record (send requests and save the responses in a ResponseStore) or replay
+ *      (serve responses from the ResponseStore only, without any network access).
+ * (12) api.store: Path to the ResponseStore file (default api-responses.bin).
+ * (13) api.replay.latency.ms: Synthetic latency added to every replayed response (default 0).
+ * ====================================================================================================================
+ * @author Shubham Chatterjee
+ * @version 10/17/2026
+ */
+
+public class ApiClient {
+
+    public enum Mode { LIVE, RECORD, REPLAY }
+
+    private static final ApiClient INSTANCE = createInstance();
+
+    private final CloseableHttpClient client;
+    private final ExecutorService executor;
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+    private final int maxPerHost;
+    private double rate = 0.0d;
+    private int burst = 1;
+    private int retries = 3;
+    private long backoffMillis = 500L;
+    private long maxBackoffMillis = 8000L;
+    private int breakerThreshold = 20;
+    private long breakerOpenMillis = 30 * 1000L;
+    private Mode mode = Mode.LIVE;
+    private ResponseStore store = null;
+    private long latencyMillis = 0L;
+
+    /**
+     * Constructor.
+     * @param maxConnections Integer Maximum number of pooled connections.
+     * @param maxPerHost Integer Maximum number of requests in flight per host.
+     * @param timeout Integer Connect and read timeout in milliseconds.
+     */
+
+    public ApiClient(int maxConnections, int maxPerHost, int timeout) {
+        this.maxPerHost = maxPerHost;
+
+        PoolingHttpClientConnectionManager cm = new PoolingHttpClientConnectionManager(60, TimeUnit.SECONDS);
+        cm.setMaxTotal(maxConnections);
+        cm.setDefaultMaxPerRoute(maxPerHost);
+        cm.setValidateAfterInactivity(5 * 1000);
+
+        RequestConfig config = RequestConfig.custom()
+                .setConnectTimeout(timeout)
+                .setSocketTimeout(timeout)
+                .setConnectionRequestTimeout(timeout)
+                .build();
+
+        this.client = HttpClients.custom()
+                .setConnectionManager(cm)
+                .setDefaultRequestConfig(config)
+                .evictIdleConnections(60, TimeUnit.SECONDS)
+                .build();
+
+        this.executor = Executors.newFixedThreadPool(maxConnections, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(@NotNull Runnable r) {
+                Thread t = new Thread(r, "api-client-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    @NotNull
+    private static ApiClient createInstance() {
+        ApiClient apiClient = new ApiClient(
+                Integer.getInteger("api.max.connections", 256),
+                Integer.getInteger("api.max.per.host", 32),
+                Integer.getInteger("api.timeout.ms", 50 * 1000));
+        double rate = Double.parseDouble(System.getProperty("api.rate", "0"));
+        apiClient.setRateLimit(rate, Integer.getInteger("api.burst", Math.max(1, (int) rate)));
+        apiClient.setRetries(Integer.getInteger("api.retries", 3),
+                Long.getLong("api.backoff.ms", 500L),
+                Long.getLong("api.backoff.max.ms", 8000L));
+        apiClient.setCircuitBreaker(Integer.getInteger("api.breaker.failures", 20),
+                Long.getLong("api.breaker.open.ms", 30 * 1000L));
+        Mode mode = Mode.valueOf(System.getProperty("api.mode", "live").toUpperCase());
+        if (mode != Mode.LIVE) {
+            String file = System.getProperty("api.store", "api-responses.bin");
+            try {
+                ResponseStore responseStore = new ResponseStore(file);
+                apiClient.setMode(mode, responseStore, Long.getLong("api.replay.latency.ms", 0L));
+                Runtime.getRuntime().addShutdownHook(new Thread(responseStore::close));
+                System.err.println("ApiClient: " + mode.name().toLowerCase() + " mode with " + responseStore.size() +
+                        " responses in " + file);
+            } catch (IOException e) {
+                System.err.println("ERROR in ApiClient.createInstance(): " + e.getClass().getCanonicalName());
+                throw new IllegalStateException("Could not open response store " + file, e);
+            }
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(apiClient::printStats));
+        return apiClient;
+    }
+
+    /**
+     * Record or replay responses.
+     * @param mode Mode LIVE, RECORD or REPLAY.
+     * @param store ResponseStore Store to record to or replay from (ignored in LIVE mode).
+     * @param latencyMillis Long Synthetic latency added to every replayed response.
+     */
+
+    public void setMode(@NotNull Mode mode, @Nullable ResponseStore store, long latencyMillis) {
+        if (mode != Mode.LIVE && store == null) {
+            throw new IllegalArgumentException("A response store is required in " + mode + " mode");
+        }
+        this.mode = mode;
+        this.store = store;
+        this.latencyMillis = latencyMillis;
+    }
+
+    @NotNull
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Limit the request rate per host.
+     * Takes effect for hosts not contacted yet, so call it before the first request.
+     * @param rate Double Maximum number of requests per second (0 for no limit).
+     * @param burst Integer Maximum number of requests sent at once.
+     */
+
+    public void setRateLimit(double rate, int burst) {
+        this.rate = rate;
+        this.burst = burst;
+    }
+
+    /**
+     * Set the retry policy for transient errors.
+     * @param retries Integer Maximum number of retries (0 for none).
+     * @param backoffMillis Long Delay before the first retry. Doubled for every further retry.
+     * @param maxBackoffMillis Long Maximum delay between retries.
+     */
+
+    public void setRetries(int retries, long backoffMillis, long maxBackoffMillis) {
+        this.retries = Math.max(0, retries);
+        this.backoffMillis = backoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * Configure the circuit breaker of each host.
+     * Takes effect for hosts not contacted yet, so call it before the first request.
+     * @param threshold Integer Consecutive failures after which requests fail fast (0 to disable).
+     * @param openMillis Long Time requests fail fast before a trial request is sent.
+     */
+
+    public void setCircuitBreaker(int threshold, long openMillis) {
+        this.breakerThreshold = threshold;
+        this.breakerOpenMillis = openMillis;
+    }
+
+    /**
+     * Get the shared client.
+     * @return ApiClient
+     */
+
+    @NotNull
+    public static ApiClient getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Send a GET request.
+     * @param url String URL.
+     * @param params List of query parameters (a parameter may be repeated).
+     * @return String Response body.
+     * @throws IOException If the request failed or the server did not return 200.
+     */
+
+    @NotNull
+    public String get(@NotNull String url, @NotNull List<NameValuePair> params) throws IOException {
+        URI uri = uri(url, params);
+        return send(uri, ResponseStore.key("GET", url, params, null), () -> new HttpGet(uri));
+    }
+
+    /**
+     * Send a POST request with a JSON body.
+     * @param url String URL.
+     * @param params List of query parameters.
+     * @param json String JSON request body.
+     * @return String Response body.
+     * @throws IOException If the request failed or the server did not return 200.
+     */
+
+    @NotNull
+    public String postJson(@NotNull String url, @NotNull List<NameValuePair> params, @NotNull String json)
+            throws IOException {
+        URI uri = uri(url, params);
+        return send(uri, ResponseStore.key("POST", url, params, json), () -> {
+            HttpPost post = new HttpPost(uri);
+            post.setHeader("Accept", "application/json");
+            post.setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
+            return post;
+        });
+    }
+
+    /**
+     * Send a GET request asynchronously.
+     * @param url String URL.
+     * @param params List of query parameters (a parameter may be repeated).
+     * @return CompletableFuture Response body. Completes exceptionally if the request failed.
+     */
+
+    @NotNull
+    public CompletableFuture<String> getAsync(@NotNull String url, @NotNull List<NameValuePair> params) {
+        return submit(url, () -> get(url, params));
+    }
+
+    /**
+     * Send a POST request with a JSON body asynchronously.
+     * @param url String URL.
+     * @param params List of query parameters.
+     * @param json String JSON request body.
+     * @return CompletableFuture Response body. Completes exceptionally if the request failed.
+     */
+
+    @NotNull
+    public CompletableFuture<String> postJsonAsync(@NotNull String url,
+                                                   @NotNull List<NameValuePair> params,
+                                                   @NotNull String json) {
+        return submit(url, () -> postJson(url, params, json));
+    }
+
+    /**
+     * Number of requests currently in flight to the host of the URL.
+     * @param url String
+     * @return Integer
+     */
+
+    public int inFlight(@NotNull String url) {
+        Host host = hosts.get(hostName(url));
+        return host == null ? 0 : maxPerHost - host.inFlight.availablePermits();
+    }
+
+    /**
+     * Request counters for the host of the URL.
+     * @param url String
+     * @return ApiStats
+     */
+
+    @NotNull
+    public ApiStats getStats(@NotNull String url) {
+        return hostState(hostName(url)).stats;
+    }
+
+    /**
+     * Request counters of every host contacted so far.
+     * @return Map of (host, counters)
+     */
+
+    @NotNull
+    public Map<String, ApiStats> getStats() {
+        Map<String, ApiStats> stats = new TreeMap<>();
+        for (Map.Entry<String, Host> entry : hosts.entrySet()) {
+            stats.put(entry.getKey(), entry.getValue().stats);
+        }
+        return stats;
+    }
+
+    /**
+     * Print the request counters of every host contacted so far.
+     */
+
+    public void printStats() {
+        for (Map.Entry<String, ApiStats> entry : getStats().entrySet()) {
+            if (entry.getValue().getRequests() > 0) {
+                System.err.println("ApiClient " + entry.getKey() + ": " + entry.getValue());
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Request {
+        String call() throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface RequestFactory {
+        HttpRequestBase create();
+    }
+
+    @NotNull
+    private CompletableFuture<String> submit(@NotNull String url, @NotNull Request request) {
+        Host host = hostState(hostName(url));
+        CompletableFuture<String> future = new CompletableFuture<>();
+        host.pending.add(() -> {
+            try {
+                future.complete(request.call());
+            } catch (IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        dispatch(host);
+        return future;
+    }
+
+    /**
+     * Hand the queued requests of a host to the executor while the host has a free slot.
+     * Every completed request releases its slot and dispatches again, so no request is left in the queue while a slot
+     * is free.
+     */
+
+    private void dispatch(@NotNull Host host) {
+        while (!host.pending.isEmpty() && host.inFlight.tryAcquire()) {
+            Runnable task = host.pending.poll();
+            if (task == null) {
+                // Another thread took the last request
+                host.inFlight.release();
+                continue;
+            }
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    host.inFlight.release();
+                    dispatch(host);
+                }
+            });
+        }
+    }
+
+    /**
+     * Send a request according to the mode: replay it from the store, or send it and record the response.
+     */
+
+    @NotNull
+    private String send(@NotNull URI uri, @NotNull String key, @NotNull RequestFactory factory) throws IOException {
+        if (mode == Mode.REPLAY) {
+            return replay(uri, key);
+        }
+        String body = execute(uri, factory);
+        if (mode == Mode.RECORD) {
+            store.put(key, body);
+        }
+        return body;
+    }
+
+    @NotNull
+    private String replay(@NotNull URI uri, @NotNull String key) throws IOException {
+        ApiStats stats = hostState(uri.getHost()).stats;
+        stats.request();
+        String body = store.get(key);
+        if (body == null) {
+            stats.failure();
+            throw new ReplayMissException(uri.getHost());
+        }
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stats.failure();
+                throw new InterruptedIOException("Interrupted during replay");
+            }
+        }
+        stats.success();
+        return body;
+    }
+
+    /**
+     * Send a request, applying the rate limiter, circuit breaker and retry policy of its host.
+     * A fresh request is created for every attempt.
+     */
+
+    @NotNull
+    private String execute(@NotNull URI uri, @NotNull RequestFactory factory) throws IOException {
+        Host host = hostState(uri.getHost());
+        host.stats.request();
+        for (int attempt = 0; ; attempt++) {
+            if (!host.breaker.allowRequest()) {
+                host.stats.rejected();
+                throw new CircuitOpenException(uri.getHost());
+            }
+            boolean recorded = false;
+            try {
+                host.stats.throttled(host.limiter.acquire());
+                String body = execute(factory.create());
+                host.breaker.onSuccess();
+                recorded = true;
+                host.stats.success();
+                return body;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                host.stats.failure();
+                throw new InterruptedIOException("Interrupted while waiting for the rate limiter");
+            } catch (ConnectionPoolTimeoutException e) {
+                // No pooled connection was free: local contention, which says nothing about the host
+                if (attempt >= retries) {
+                    host.stats.failure();
+                    throw e;
+                }
+                host.stats.retry();
+            } catch (IOException e) {
+                if (!isTransient(e)) {
+                    // The service answered, so it is up
+                    host.breaker.onSuccess();
+                    recorded = true;
+                    host.stats.failure();
+                    throw e;
+                }
+                host.breaker.onFailure();
+                recorded = true;
+                if (attempt >= retries) {
+                    host.stats.failure();
+                    throw e;
+                }
+                host.stats.retry();
+            } catch (RuntimeException e) {
+                host.stats.failure();
+                throw e;
+            } finally {
+                if (!recorded) {
+                    // Otherwise a trial request that ended without an outcome would keep the breaker half-open
+                    host.breaker.onAbort();
+                }
+            }
+            backoff(attempt);
+        }
+    }
+
+    @NotNull
+    private String execute(@NotNull HttpRequestBase request) throws IOException {
+        try (CloseableHttpResponse response = client.execute(request)) {
+            HttpEntity entity = response.getEntity();
+            String body = entity != null ? EntityUtils.toString(entity, StandardCharsets.UTF_8) : "";
+            int status = response.getStatusLine().getStatusCode();
+            if (status != 200) {
+                throw new HttpStatusException(status, request.getURI().getHost());
+            }
+            return body;
+        }
+    }
+
+    /**
+     * Connection errors, timeouts, "429 Too Many Requests" and server errors are worth retrying, and count as failures
+     * of the host. Other HTTP errors (e.g., a bad request) would fail again. A timeout waiting for a pooled connection
+     * is not a failure of the host (it is handled by execute()).
+     */
+
+    private static boolean isTransient(@NotNull IOException e) {
+        if (e instanceof HttpStatusException) {
+            int status = ((HttpStatusException) e).getStatus();
+            return status == 429 || status >= 500;
+        }
+        return !(e instanceof CircuitOpenException) && !(e instanceof ConnectionPoolTimeoutException);
+    }
+
+    /**
+     * Sleep before a retry: backoffMillis * 2^attempt, capped at maxBackoffMillis, with up to 50% random jitter so
+     * that parallel callers do not retry in lockstep.
+     */
+
+    private void backoff(int attempt) throws InterruptedIOException {
+        long delay = Math.min(maxBackoffMillis, backoffMillis << Math.min(attempt, 20));
+        delay = delay / 2 + (long) (ThreadLocalRandom.current().nextDouble() * (delay / 2 + 1));
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+
+    @NotNull
+    private Host hostState(String name) {
+        return hosts.computeIfAbsent(String.valueOf(name), h -> new Host(maxPerHost,
+                new RateLimiter(rate, burst), new CircuitBreaker(breakerThreshold, breakerOpenMillis)));
+    }
+
+    @NotNull
+    private static URI uri(@NotNull String url, @NotNull List<NameValuePair> params) throws IOException {
+        try {
+            return new URIBuilder(url.trim()).addParameters(params).build();
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @NotNull
+    private static String hostName(@NotNull String url) {
+        return URI.create(url.trim()).getHost();
+    }
+
+    /**
+     * Per-host state.
+     */
+
+    private static final class Host {
+        final Semaphore inFlight;
+        final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+        final RateLimiter limiter;
+        final CircuitBreaker breaker;
+        final ApiStats stats = new ApiStats();
+
+        Host(int maxPerHost, RateLimiter limiter, CircuitBreaker breaker) {
+            this.inFlight = new Semaphore(maxPerHost);
+            this.limiter = limiter;
+            this.breaker = breaker;
+        }
+    }
+
+    /**
+     * Thrown when the server returns a status other than 200.
+     */
+
+    public static class HttpStatusException extends IOException {
+        private static final long serialVersionUID = 1L;
+        private final int status;
+
+        public HttpStatusException(int status, String host) {
+            super("HTTP " + status + " from " + host);
+            this.status = status;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+    }
+
+    /**
+     * Thrown when a request is not sent because the circuit breaker of its host is open.
+     */
+
+    public static class CircuitOpenException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public CircuitOpenException(String host) {
+            super("Circuit breaker open for " + host);
+        }
+    }
+
+    /**
+     * Thrown in replay mode when a request was not recorded.
+     */
+
+    public static class ReplayMissException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public ReplayMissException(String host) {
+            super("No recorded response for request to " + host);
+        }
+    }
+}
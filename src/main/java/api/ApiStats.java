@@ -0,0 +1,95 @@
+package api;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ====================================================================================================================
+ * Request counters for one remote host.
+ * A request is counted once in "requests" and ends up in exactly one of "successes", "failures" or "rejected", so
+ * failures + rejected is the number of requests whose result was dropped (and which the callers turned into an empty
+ * result or a score of 0.0). This tells a real zero relatedness apart from a dropped request.
+ * ====================================================================================================================
+ * @author Shubham Chatterjee
+ * @version 10/17/2026
+ */
+
+public class ApiStats {
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong successes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong throttledNanos = new AtomicLong();
+
+    void request() {
+        requests.incrementAndGet();
+    }
+
+    void success() {
+        successes.incrementAndGet();
+    }
+
+    void failure() {
+        failures.incrementAndGet();
+    }
+
+    void rejected() {
+        rejected.incrementAndGet();
+    }
+
+    void retry() {
+        retries.incrementAndGet();
+    }
+
+    void throttled(long nanos) {
+        if (nanos > 0) {
+            throttledNanos.addAndGet(nanos);
+        }
+    }
+
+    /** Number of requests made by callers (retries are not counted again). */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /** Number of requests that returned a response. */
+    public long getSuccesses() {
+        return successes.get();
+    }
+
+    /** Number of requests that failed after all retries. */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /** Number of requests not sent because the circuit breaker was open. */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /** Number of retries sent. */
+    public long getRetries() {
+        return retries.get();
+    }
+
+    /** Total time in milliseconds callers waited for the rate limiter. */
+    public long getThrottledMillis() {
+        return throttledNanos.get() / 1000000L;
+    }
+
+    /** Number of requests whose result was dropped (failures + rejected). */
+    public long getDropped() {
+        return failures.get() + rejected.get();
+    }
+
+    @Override
+    public String toString() {
+        return "requests=" + getRequests() +
+                ", successes=" + getSuccesses() +
+                ", failures=" + getFailures() +
+                ", rejected=" + getRejected() +
+                ", retries=" + getRetries() +
+                ", throttled=" + getThrottledMillis() + "ms";
+    }
+}
@@ -0,0 +1,101 @@
+package api;
+
+/**
+ * ====================================================================================================================
+ * A circuit breaker for a remote service.
+ * (1) CLOSED: Requests go through. After "threshold" consecutive failures the breaker opens.
+ * (2) OPEN: Requests fail fast without being sent, until "openMillis" have passed.
+ * (3) HALF_OPEN: One trial request is let through. If it succeeds the breaker closes, otherwise it opens again. If it
+ *     ends without an outcome (e.g., it was interrupted), onAbort() lets the next request be the trial.
+ * This keeps a long experiment from spending a full timeout (and all its retries) on every call while the service
+ * is down.
+ * ====================================================================================================================
+ * @author Shubham Chatterjee
+ * @version 10/17/2026
+ */
+
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int threshold;
+    private final long openMillis;
+    private State state = State.CLOSED;
+    private int failures = 0;
+    private long openedAt = 0L;
+    private Thread trial = null;
+
+    /**
+     * Constructor.
+     * @param threshold Integer Number of consecutive failures that opens the breaker (0 to never open).
+     * @param openMillis Long Time in milliseconds the breaker stays open before a trial request is allowed.
+     */
+
+    public CircuitBreaker(int threshold, long openMillis) {
+        this.threshold = threshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * Whether a request may be sent now.
+     * @return Boolean
+     */
+
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt < openMillis) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trial = Thread.currentThread();
+                return true;
+            default:
+                if (trial != null) {
+                    return false;
+                }
+                trial = Thread.currentThread();
+                return true;
+        }
+    }
+
+    /**
+     * Record a successful request.
+     */
+
+    public synchronized void onSuccess() {
+        failures = 0;
+        trial = null;
+        state = State.CLOSED;
+    }
+
+    /**
+     * Record a failed request.
+     */
+
+    public synchronized void onFailure() {
+        failures++;
+        trial = null;
+        if (state == State.HALF_OPEN || (threshold > 0 && failures >= threshold)) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Record a request of the calling thread that ended without telling whether the service is up (e.g., it was
+     * interrupted, or no local connection was free). If it was the trial request, the next request becomes the trial.
+     */
+
+    public synchronized void onAbort() {
+        if (trial == Thread.currentThread()) {
+            trial = null;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
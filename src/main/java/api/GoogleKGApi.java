@@ -1,14 +1,16 @@
 package api;
 
+import org.apache.http.NameValuePair;
+import org.apache.http.message.BasicNameValuePair;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Class to query the Google Knowledge Graph API.
@@ -85,9 +87,9 @@ public class GoogleKGApi {
 
 
         try {
-            Document doc = getDocument(data);
-            if (doc.text() != null) {
-                JSONObject json = new JSONObject(doc.text());
+            String response = getResponse(data);
+            if (response != null && !response.isEmpty()) {
+                JSONObject json = new JSONObject(response);
                 if (json.has("itemListElement")) {
                     JSONArray jsonArray = json.getJSONArray("itemListElement");
                     for (int i = 0; i < jsonArray.length(); i++) {
@@ -125,23 +127,22 @@ public class GoogleKGApi {
     /**
      * Helper method to connect to the URL.
      * @param data String The text to annotate.
-     * @return Document Jsoup document
+     * @return String Response body, or null on error.
      */
 
-    private static Document getDocument(String data) {
-        Document doc = null;
+    @Nullable
+    private static String getResponse(String data) {
+        List<NameValuePair> params = new ArrayList<>();
+        params.add(new BasicNameValuePair("query", data));
+        params.add(new BasicNameValuePair("limit", "10"));
+        params.add(new BasicNameValuePair("indent", "true"));
+        params.add(new BasicNameValuePair("key", KEY));
         try {
-            doc = Jsoup.connect(URL)
-                    .data("query", data)
-                    .data("limit", "10")
-                    .data("indent","true")
-                    .data("key",KEY)
-                    .ignoreContentType(true)
-                    .get();
+            return ApiClient.getInstance().get(URL, params);
         } catch (IOException e) {
             e.printStackTrace();
         }
-        return doc;
+        return null;
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,64 @@
+package api;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ====================================================================================================================
+ * A token-bucket rate limiter.
+ * The bucket holds at most "burst" tokens and is refilled at "rate" tokens per second. Every request takes one token;
+ * if the bucket is empty the caller sleeps until its token is due. Tokens are reserved before sleeping, so concurrent
+ * callers are spread out in time instead of all waking up together.
+ * A rate of zero (or less) disables limiting.
+ * ====================================================================================================================
+ * @author Shubham Chatterjee
+ * @version 10/17/2026
+ */
+
+public class RateLimiter {
+
+    private final double nanosPerToken;
+    private final double burst;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * Constructor.
+     * @param rate Double Number of requests allowed per second (0 for no limit).
+     * @param burst Integer Maximum number of requests allowed at once.
+     */
+
+    public RateLimiter(double rate, int burst) {
+        this.nanosPerToken = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0.0d;
+        this.burst = Math.max(1, burst);
+        this.tokens = this.burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Take one token, waiting for it if necessary.
+     * @return Long Time waited in nanoseconds.
+     * @throws InterruptedException If the thread was interrupted while waiting.
+     */
+
+    public long acquire() throws InterruptedException {
+        if (nanosPerToken == 0.0d) {
+            return 0L;
+        }
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - lastRefill) / nanosPerToken);
+            lastRefill = now;
+            tokens -= 1.0d;
+            wait = tokens >= 0.0d ? 0L : (long) (-tokens * nanosPerToken);
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+        return wait;
+    }
+
+    public boolean isEnabled() {
+        return nanosPerToken > 0.0d;
+    }
+}
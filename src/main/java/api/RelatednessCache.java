@@ -0,0 +1,328 @@
+package api;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * ====================================================================================================================
+ * A persistent cache of entity relatedness scores returned by the WAT Entity Relatedness system.
+ * There is one file per relatedness measure (for example "mw.rel" or "jaccard.rel") in the cache directory.
+ * Each file is a memory-mapped open-addressing hash table of (pair, score) slots, so a lookup is a few memory reads
+ * and the cache survives JVM restarts without any (de)serialization.
+ * Relatedness is symmetric, hence the pair (id1, id2) and the pair (id2, id1) map to the same slot.
+ * The cache is safe to use from parallel streams: lookups share a read lock, insertions take a write lock.
+ * ====================================================================================================================
+ * @author Shubham Chatterjee
+ * @version 10/17/2026
+ */
+
+public class RelatednessCache {
+
+    private static final int MAGIC = 0x52454C43; // "RELC"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;   // magic, version, capacity, size
+    private static final int SLOT_SIZE = 16;     // long key, double score
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    private static final int MAX_CAPACITY = 1 << 26;
+    private static final double MAX_LOAD = 0.6d;
+
+    private final Path dir;
+    private final Map<String, Table> tables = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor.
+     * @param dir String Directory where the cache files are stored. Created if it does not exist.
+     * @throws IOException If the directory could not be created.
+     */
+
+    public RelatednessCache(String dir) throws IOException {
+        this.dir = Paths.get(dir);
+        Files.createDirectories(this.dir);
+    }
+
+    /**
+     * Look up the relatedness between two entities.
+     * @param relMeasure String Relatedness measure (mw, jaccard, lm, ...).
+     * @param id1 Integer Wikipedia ID of the first entity.
+     * @param id2 Integer Wikipedia ID of the second entity.
+     * @return Double The cached relatedness, or Double.NaN if the pair is not in the cache.
+     */
+
+    public double get(String relMeasure, int id1, int id2) {
+        if (!isCacheable(id1, id2)) {
+            return Double.NaN;
+        }
+        try {
+            return table(relMeasure).get(key(id1, id2));
+        } catch (IOException e) {
+            System.err.println("ERROR in RelatednessCache.get(): " + e.getClass().getCanonicalName());
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Store the relatedness between two entities.
+     * Pairs with an invalid (non-positive) Wikipedia ID are not stored.
+     * @param relMeasure String Relatedness measure (mw, jaccard, lm, ...).
+     * @param id1 Integer Wikipedia ID of the first entity.
+     * @param id2 Integer Wikipedia ID of the second entity.
+     * @param score Double Relatedness score.
+     */
+
+    public void put(String relMeasure, int id1, int id2, double score) {
+        if (!isCacheable(id1, id2) || Double.isNaN(score)) {
+            return;
+        }
+        try {
+            table(relMeasure).put(key(id1, id2), score);
+        } catch (IOException e) {
+            System.err.println("ERROR in RelatednessCache.put(): " + e.getClass().getCanonicalName());
+        }
+    }
+
+    /**
+     * Number of pairs cached for a relatedness measure.
+     * @param relMeasure String Relatedness measure.
+     * @return Integer Number of cached pairs.
+     */
+
+    public int size(String relMeasure) {
+        try {
+            return table(relMeasure).size();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Force all pending changes to disk.
+     */
+
+    public void flush() {
+        for (Table table : tables.values()) {
+            table.flush();
+        }
+    }
+
+    /**
+     * Flush and release all cache files.
+     */
+
+    public void close() {
+        for (Table table : tables.values()) {
+            table.close();
+        }
+        tables.clear();
+    }
+
+    private Table table(String relMeasure) throws IOException {
+        Table table = tables.get(relMeasure);
+        if (table == null) {
+            synchronized (tables) {
+                table = tables.get(relMeasure);
+                if (table == null) {
+                    table = new Table(dir.resolve(relMeasure + ".rel"));
+                    tables.put(relMeasure, table);
+                }
+            }
+        }
+        return table;
+    }
+
+    private static boolean isCacheable(int id1, int id2) {
+        return id1 > 0 && id2 > 0;
+    }
+
+    /**
+     * Order-independent key for a pair of entities.
+     * Since both IDs are positive, the key is never 0, which marks an empty slot.
+     */
+
+    static long key(int id1, int id2) {
+        int lo = Math.min(id1, id2), hi = Math.max(id1, id2);
+        return ((long) lo << 32) | (hi & 0xFFFFFFFFL);
+    }
+
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    /**
+     * A single memory-mapped hash table.
+     */
+
+    private static final class Table {
+        private final Path file;
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private FileChannel channel;
+        private MappedByteBuffer buffer;
+        private int capacity;
+        private int size;
+
+        Table(@NotNull Path file) throws IOException {
+            this.file = file;
+            if (Files.exists(file) && Files.size(file) >= HEADER_SIZE) {
+                map(file);
+                if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                    throw new IOException("Not a relatedness cache file: " + file);
+                }
+                capacity = buffer.getInt(8);
+                size = buffer.getInt(12);
+            } else {
+                create(file, INITIAL_CAPACITY);
+                map(file);
+                capacity = INITIAL_CAPACITY;
+                size = 0;
+            }
+        }
+
+        double get(long key) {
+            lock.readLock().lock();
+            try {
+                int mask = capacity - 1;
+                int slot = hash(key) & mask;
+                while (true) {
+                    int pos = HEADER_SIZE + slot * SLOT_SIZE;
+                    long k = buffer.getLong(pos);
+                    if (k == key) {
+                        return buffer.getDouble(pos + 8);
+                    }
+                    if (k == 0L) {
+                        return Double.NaN;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void put(long key, double score) throws IOException {
+            lock.writeLock().lock();
+            try {
+                if (size + 1 > capacity * MAX_LOAD) {
+                    if (capacity >= MAX_CAPACITY) {
+                        return; // Full. Keep serving what we have.
+                    }
+                    resize(capacity << 1);
+                }
+                if (insert(buffer, capacity, key, score)) {
+                    size++;
+                    buffer.putInt(12, size);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        int size() {
+            lock.readLock().lock();
+            try {
+                return size;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void flush() {
+            lock.writeLock().lock();
+            try {
+                buffer.force();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void close() {
+            lock.writeLock().lock();
+            try {
+                buffer.force();
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("ERROR in RelatednessCache.close(): " + e.getClass().getCanonicalName());
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * Rehash all slots into a new file with the given capacity and swap it in place of the current one.
+         */
+
+        private void resize(int newCapacity) throws IOException {
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            create(tmp, newCapacity);
+            try (FileChannel tmpChannel = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer tmpBuffer = tmpChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                        HEADER_SIZE + (long) newCapacity * SLOT_SIZE);
+                for (int slot = 0; slot < capacity; slot++) {
+                    int pos = HEADER_SIZE + slot * SLOT_SIZE;
+                    long k = buffer.getLong(pos);
+                    if (k != 0L) {
+                        insert(tmpBuffer, newCapacity, k, buffer.getDouble(pos + 8));
+                    }
+                }
+                tmpBuffer.putInt(12, size);
+                tmpBuffer.force();
+            }
+            channel.close();
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            map(file);
+            capacity = newCapacity;
+        }
+
+        private void map(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+
+        /**
+         * Insert or overwrite a slot.
+         * @return Boolean True if a new slot was used, false if an existing key was overwritten.
+         */
+
+        private static boolean insert(@NotNull MappedByteBuffer buf, int capacity, long key, double score) {
+            int mask = capacity - 1;
+            int slot = hash(key) & mask;
+            while (true) {
+                int pos = HEADER_SIZE + slot * SLOT_SIZE;
+                long k = buf.getLong(pos);
+                if (k == 0L || k == key) {
+                    buf.putDouble(pos + 8, score);
+                    buf.putLong(pos, key);
+                    return k == 0L;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private static void create(Path path, int capacity) throws IOException {
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0,
+                        HEADER_SIZE + (long) capacity * SLOT_SIZE);
+                buf.putInt(0, MAGIC);
+                buf.putInt(4, VERSION);
+                buf.putInt(8, capacity);
+                buf.putInt(12, 0);
+                buf.force();
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package api;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * ====================================================================================================================
+ * A read-only, precomputed matrix of entity relatedness scores for one relatedness measure.
+ * The file holds (pair, score) records sorted by pair and is memory-mapped, so a lookup is a binary search over the
+ * mapped records: no request to WAT, no deserialization and no heap needed for the scores.
+ * Relatedness is symmetric, hence the pair (id1, id2) and the pair (id2, id1) are the same record.
+ * The matrix is written by the offline stage random.PrecomputeRelatedness and read by
+ * WATApi.EntityRelatedness when "-Dwat.matrix.dir=DIR" is given.
+ * ====================================================================================================================
+ * @author Shubham Chatterjee
+ * @version 10/17/2026
+ */
+
+public class RelatednessMatrix {
+
+    private static final int MAGIC = 0x52454C4D; // "RELM"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;   // magic, version, (long) number of records
+    private static final int RECORD_SIZE = 16;   // long key, double score
+    private static final int RECORDS_PER_CHUNK = 1 << 26; // 1 GB per mapping
+
+    private final MappedByteBuffer[] chunks;
+    private final long size;
+
+    private RelatednessMatrix(MappedByteBuffer[] chunks, long size) {
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    /**
+     * Open a matrix file.
+     * @param file String Path to the file.
+     * @return RelatednessMatrix
+     * @throws IOException If the file could not be read or is not a relatedness matrix.
+     */
+
+    @NotNull
+    public static RelatednessMatrix open(@NotNull String file) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Keep reading
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a relatedness matrix: " + file);
+            }
+            long size = header.getLong();
+            if (channel.size() < HEADER_SIZE + size * RECORD_SIZE) {
+                throw new IOException("Truncated relatedness matrix: " + file);
+            }
+            int numChunks = (int) ((size + RECORDS_PER_CHUNK - 1) / RECORDS_PER_CHUNK);
+            MappedByteBuffer[] chunks = new MappedByteBuffer[numChunks];
+            for (int i = 0; i < numChunks; i++) {
+                long first = (long) i * RECORDS_PER_CHUNK;
+                long records = Math.min(RECORDS_PER_CHUNK, size - first);
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * RECORD_SIZE,
+                        records * RECORD_SIZE);
+            }
+            return new RelatednessMatrix(chunks, size);
+        }
+    }
+
+    /**
+     * Look up the relatedness between two entities.
+     * @param id1 Integer Wikipedia ID of the first entity.
+     * @param id2 Integer Wikipedia ID of the second entity.
+     * @return Double The precomputed relatedness, or Double.NaN if the pair is not in the matrix.
+     */
+
+    public double get(int id1, int id2) {
+        if (id1 <= 0 || id2 <= 0) {
+            return Double.NaN;
+        }
+        long key = RelatednessCache.key(id1, id2);
+        long lo = 0, hi = size - 1;
+        while (lo <= hi) {
+            long mid = (lo + hi) >>> 1;
+            long k = keyAt(mid);
+            if (k < key) {
+                lo = mid + 1;
+            } else if (k > key) {
+                hi = mid - 1;
+            } else {
+                return scoreAt(mid);
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Number of pairs in the matrix.
+     * @return Long
+     */
+
+    public long size() {
+        return size;
+    }
+
+    private long keyAt(long record) {
+        return chunks[(int) (record / RECORDS_PER_CHUNK)].getLong((int) (record % RECORDS_PER_CHUNK) * RECORD_SIZE);
+    }
+
+    private double scoreAt(long record) {
+        return chunks[(int) (record / RECORDS_PER_CHUNK)]
+                .getDouble((int) (record % RECORDS_PER_CHUNK) * RECORD_SIZE + 8);
+    }
+
+    /**
+     * Write a matrix file.
+     * If a pair occurs more than once, one of its scores is kept (WAT returns the same score for both).
+     * The file is written to a temporary file first and then moved in place, so readers never see a partial matrix.
+     * @param file String Path to the file.
+     * @param id1 Array of Wikipedia IDs of the first entity of each pair.
+     * @param id2 Array of Wikipedia IDs of the second entity of each pair.
+     * @param scores Array of relatedness scores.
+     * @param n Integer Number of pairs.
+     * @throws IOException If the file could not be written.
+     */
+
+    public static void write(@NotNull String file,
+                             @NotNull int[] id1,
+                             @NotNull int[] id2,
+                             @NotNull double[] scores,
+                             int n) throws IOException {
+        long[] keys = new long[n];
+        double[] values = new double[n];
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            if (id1[i] > 0 && id2[i] > 0 && !Double.isNaN(scores[i])) {
+                keys[m] = RelatednessCache.key(id1[i], id2[i]);
+                values[m++] = scores[i];
+            }
+        }
+        sort(keys, values, m);
+
+        Path path = Paths.get(file);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        long count = 0;
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(0L);
+            for (int i = 0; i < m; i++) {
+                if (i + 1 < m && keys[i + 1] == keys[i]) {
+                    continue; // Duplicate pair
+                }
+                if (buffer.remaining() < RECORD_SIZE) {
+                    drain(buffer, channel);
+                }
+                buffer.putLong(keys[i]).putDouble(values[i]);
+                count++;
+            }
+            drain(buffer, channel);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(count).flip();
+            channel.write(buffer, 0);
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void drain(@NotNull ByteBuffer buffer, @NotNull FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Sort the keys, and the values with them, in place (no boxing of millions of pairs).
+     */
+
+    private static void sort(@NotNull long[] keys, @NotNull double[] values, int n) {
+        quickSort(keys, values, 0, n - 1);
+    }
+
+    private static void quickSort(long[] keys, double[] values, int lo, int hi) {
+        while (hi - lo > 16) {
+            int mid = (lo + hi) >>> 1;
+            long pivot = median(keys[lo], keys[mid], keys[hi]);
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (keys[i] < pivot) {
+                    i++;
+                }
+                while (keys[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(keys, values, i++, j--);
+                }
+            }
+            // Recurse into the smaller half, loop on the larger one
+            if (j - lo < hi - i) {
+                quickSort(keys, values, lo, j);
+                lo = i;
+            } else {
+                quickSort(keys, values, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && keys[j - 1] > keys[j]; j--) {
+                swap(keys, values, j, j - 1);
+            }
+        }
+    }
+
+    private static long median(long a, long b, long c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+
+    private static void swap(long[] keys, double[] values, int i, int j) {
+        long k = keys[i];
+        keys[i] = keys[j];
+        keys[j] = k;
+        double v = values[i];
+        values[i] = values[j];
+        values[j] = v;
+    }
+}
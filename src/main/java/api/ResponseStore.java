@@ -0,0 +1,205 @@
+package api;
+
+import org.apache.http.NameValuePair;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ====================================================================================================================
+ * A store of (request, response) pairs recorded from the WAT, SWAT and Google Knowledge Graph services.
+ * It is used by ApiClient to record the responses of a live run and to serve them again in replay mode, so that
+ * experiments and load tests can run offline and are repeatable.
+ *
+ * A request is identified by its method, URL, query parameters (in order, since WAT reads repeated parameters in
+ * order) and body. API keys are left out of the identity, so a store recorded with one token replays with another.
+ * The store is an append-only binary file of length-prefixed UTF-8 (request, response) records which is loaded into
+ * memory when opened. Later records override earlier ones.
+ * ====================================================================================================================
+ * @author Shubham Chatterjee
+ * @version 10/17/2026
+ */
+
+public class ResponseStore {
+
+    private static final int MAGIC = 0x52455350; // "RESP"
+    private static final Set<String> SECRET_PARAMS = new HashSet<>(Arrays.asList("gcube-token", "key"));
+
+    private final Path file;
+    private final Map<String, String> responses = new ConcurrentHashMap<>();
+    private DataOutputStream out;
+
+    /**
+     * Constructor.
+     * Loads the store if the file exists.
+     * @param file String Path to the store file.
+     * @throws IOException If the file exists but could not be read.
+     */
+
+    public ResponseStore(@NotNull String file) throws IOException {
+        this.file = Paths.get(file);
+        if (Files.exists(this.file)) {
+            load();
+        }
+    }
+
+    /**
+     * Identity of a request.
+     * @param method String HTTP method.
+     * @param url String URL.
+     * @param params List of query parameters.
+     * @param body String Request body (may be null).
+     * @return String
+     */
+
+    @NotNull
+    public static String key(@NotNull String method,
+                             @NotNull String url,
+                             @NotNull List<NameValuePair> params,
+                             @Nullable String body) {
+        StringBuilder sb = new StringBuilder(method).append(' ').append(url.trim());
+        char sep = '?';
+        for (NameValuePair param : params) {
+            if (SECRET_PARAMS.contains(param.getName())) {
+                continue;
+            }
+            sb.append(sep).append(param.getName()).append('=').append(param.getValue());
+            sep = '&';
+        }
+        if (body != null) {
+            sb.append('\n').append(body);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Get a recorded response.
+     * @param key String Request identity (see key()).
+     * @return String The response body, or null if the request was not recorded.
+     */
+
+    @Nullable
+    public String get(@NotNull String key) {
+        return responses.get(key);
+    }
+
+    /**
+     * Record a response.
+     * @param key String Request identity (see key()).
+     * @param response String Response body.
+     */
+
+    public void put(@NotNull String key, @NotNull String response) {
+        String old = responses.put(key, response);
+        if (!response.equals(old)) {
+            append(key, response);
+        }
+    }
+
+    public int size() {
+        return responses.size();
+    }
+
+    /**
+     * Flush the store file.
+     */
+
+    public synchronized void flush() {
+        if (out != null) {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                System.err.println("ERROR in ResponseStore.flush(): " + e.getClass().getCanonicalName());
+            }
+        }
+    }
+
+    /**
+     * Flush and close the store file.
+     */
+
+    public synchronized void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                System.err.println("ERROR in ResponseStore.close(): " + e.getClass().getCanonicalName());
+            }
+            out = null;
+        }
+    }
+
+    private void load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a response store: " + file);
+            }
+            while (true) {
+                String key, response;
+                try {
+                    key = readString(in);
+                    response = readString(in);
+                } catch (EOFException e) {
+                    break; // End of file, or a partially written record
+                }
+                responses.put(key, response);
+            }
+        } catch (EOFException e) {
+            // Empty file
+        }
+    }
+
+    private synchronized void append(@NotNull String key, @NotNull String response) {
+        try {
+            if (out == null) {
+                if (file.getParent() != null) {
+                    Files.createDirectories(file.getParent());
+                }
+                boolean isNew = !Files.exists(file) || Files.size(file) == 0;
+                out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+                if (isNew) {
+                    out.writeInt(MAGIC);
+                }
+            }
+            writeString(out, key);
+            writeString(out, response);
+        } catch (IOException e) {
+            System.err.println("ERROR in ResponseStore.append(): " + e.getClass().getCanonicalName());
+        }
+    }
+
+    private static void writeString(@NotNull DataOutputStream out, @NotNull String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @NotNull
+    private static String readString(@NotNull DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > (1 << 28)) {
+            throw new EOFException("Corrupt record");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -1,18 +1,21 @@
 package api;
 
 
-import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.NameValuePair;
+import org.apache.http.message.BasicNameValuePair;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.*;
-import java.net.*;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * This class uses the SWAT API to find salient entities in a text given as input.
@@ -26,6 +29,13 @@ public class SWATApi {
     private final static String URL = "https://swat.d4science.org/salience";
     private final static String TOKEN = "XXXXX"; // INSERT KEY HERE
 
+    /**
+     * Cache of annotated texts. Responses are cached before the salient/all filter is applied.
+     * If "-Dwat.cache.dir=DIR" is given, the cache is backed by DIR/swat-annotations.bin.
+     */
+    private static volatile AnnotationCache cache = AnnotationCache.open(System.getProperty("wat.cache.dir"),
+            "swat-annotations.bin");
+
     /**
      * Returns a map of entities and salience score.
      * @param text String Text to annotate
@@ -38,19 +48,74 @@ public class SWATApi {
     @NotNull
     public static Map<String, Double> getEntities(String text, String type) {
         Map<String, Double> entityMap = new HashMap<>();
-        URL u = getURL();
-        assert u != null;
-        URLConnection connection = setUpConnection(u);
-        doTask(connection, text, entityMap, type);
+        AnnotationCache c = cache;
+        String key = c != null ? AnnotationCache.key("swat", "salience", text) : null;
+        String res = key != null ? c.get(key) : null;
+        if (res == null) {
+            try {
+                res = ApiClient.getInstance().postJson(URL, params(), toJson(text));
+            } catch (IOException e) {
+                System.err.println("ERROR: IOException");
+                System.err.println("Input Stream not available.");
+                return entityMap;
+            }
+            if (key != null) {
+                c.put(key, res);
+            }
+        }
+        parse(res, entityMap, type);
         return entityMap;
 
     }
 
-    private static void doTask(URLConnection connection, String text, Map<String, Double> entityMap, String type) {
-        String jsonInputString = "{\"content\": \"" + text + "\"}";
+    /**
+     * Asynchronous version of getEntities().
+     * The request is sent through the shared ApiClient; the future completes with an empty map on error.
+     * @param text String Text to annotate
+     * @param type String Type of entities required (all or sal).
+     * @return CompletableFuture Map of (entity, salience)
+     */
 
-        write(jsonInputString, connection);
-        String res = read(connection);
+    @NotNull
+    public static CompletableFuture<Map<String, Double>> getEntitiesAsync(String text, String type) {
+        AnnotationCache c = cache;
+        String key = c != null ? AnnotationCache.key("swat", "salience", text) : null;
+        String cached = key != null ? c.get(key) : null;
+        if (cached != null) {
+            Map<String, Double> entityMap = new HashMap<>();
+            parse(cached, entityMap, type);
+            return CompletableFuture.completedFuture(entityMap);
+        }
+        return ApiClient.getInstance().postJsonAsync(URL, params(), toJson(text)).handle((res, e) -> {
+            Map<String, Double> entityMap = new HashMap<>();
+            if (e != null) {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                System.err.println("ERROR in SWATApi.getEntitiesAsync(): " + cause.getClass().getCanonicalName());
+                return entityMap;
+            }
+            if (key != null) {
+                c.put(key, res);
+            }
+            parse(res, entityMap, type);
+            return entityMap;
+        });
+    }
+
+    /**
+     * Use the given annotation cache (null to disable caching).
+     * @param annotationCache AnnotationCache
+     */
+
+    public static void setCache(@Nullable AnnotationCache annotationCache) {
+        cache = annotationCache;
+    }
+
+    @Nullable
+    public static AnnotationCache getCache() {
+        return cache;
+    }
+
+    private static void parse(@NotNull String res, Map<String, Double> entityMap, String type) {
 
         if (res.isEmpty()) {
             System.err.println("Server returned no result.");
@@ -72,110 +137,27 @@ public class SWATApi {
     }
 
     /**
-     * Get the URL for the SWAT API.
+     * Query parameters for the SWAT API.
      * This method adds the parameter "gcube-token" to the URL.
-     * @return URL
+     * @return List
      */
-    @Nullable
-    private static URL getURL() {
-        URIBuilder ub = null;
-        try {
-            ub = new URIBuilder(URL);
-        } catch (URISyntaxException e) {
-            e.printStackTrace();
-        }
-        assert ub != null;
-        ub.addParameter("gcube-token", TOKEN);
-        String url_new = ub.toString();
-        try {
-            return new URL (url_new);
-        } catch (MalformedURLException e) {
-            e.printStackTrace();
-        }
-        return null;
-    }
 
-    /**
-     * Setup the connection to the SWAT API.
-     * @param url URL to connect to.
-     * @return URLConnection
-     */
     @NotNull
-    private static URLConnection setUpConnection(@NotNull URL url) {
-        HttpURLConnection con = null;
-        try {
-            con = (HttpURLConnection)url.openConnection();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        try {
-            assert con != null;
-            con.setRequestMethod("POST");
-        } catch (ProtocolException e) {
-            e.printStackTrace();
-        }
-        con.setRequestProperty("Content-Type", "application/json; utf-8");
-        con.setRequestProperty("Accept", "application/json");
-        con.setDoOutput(true);
-        return con;
+    private static List<NameValuePair> params() {
+        List<NameValuePair> params = new ArrayList<>();
+        params.add(new BasicNameValuePair("gcube-token", TOKEN));
+        return params;
     }
 
     /**
-     * Write the data in JSON format to the output stream.
-     * @param jsonInputString The text in JSON format.
-     * @param connection URLConnection
+     * Convert the text to the JSON request body.
+     * @param text String The text to annotate.
+     * @return String The text in JSON format.
      */
-    private static void write(@NotNull String jsonInputString,
-                              @NotNull URLConnection connection) {
-        try(OutputStream os = connection.getOutputStream()) {
-            byte[] input = jsonInputString.getBytes(StandardCharsets.UTF_8);
-            os.write(input, 0, input.length);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
 
-    /**
-     * Read the response from the server.
-     * @param connection URLConnection
-     * @return String The response read
-     */
     @NotNull
-    private static String read(@NotNull URLConnection connection) {
-
-        InputStream inputStream;
-        try {
-            inputStream = connection.getInputStream();
-        } catch (IOException e) {
-            System.err.println("ERROR: IOException");
-            System.err.println("Input Stream not available.");
-            return "";
-        }
-
-        try {
-            if (inputStream.available() == 0) {
-                System.err.println("InputStream available but no data to read.");
-                return "";
-            }
-        } catch (IOException e) {
-            System.err.println("ERROR: IOException");
-            System.err.println("InputStream available but no data to read.");
-            return "";
-        }
-
-
-        StringBuilder response = new StringBuilder();
-        try (BufferedReader br = new BufferedReader(
-                new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
-            String responseLine;
-            while ((responseLine = br.readLine()) != null) {
-                response.append(responseLine.trim());
-            }
-        } catch (IOException e) {
-            System.err.println("ERROR: IOException while reading from InputStream");
-            e.printStackTrace();
-        }
-        return response.toString();
+    private static String toJson(String text) {
+        return "{\"content\": " + JSONObject.quote(text) + "}";
     }
 
     /**
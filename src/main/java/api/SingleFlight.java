@@ -0,0 +1,112 @@
+package api;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * ====================================================================================================================
+ * A table of requests in flight, keyed by what they ask for.
+ * When several threads ask for the same key at the same time, only the first one makes the call; the others wait for
+ * its result. The key is removed as soon as the call completes, so later callers make a new call (by then they
+ * should find the result in a cache).
+ * This matters on cold runs with parallel streams: mentions that share a target entity ask WAT the same question at
+ * the same moment, and all of them miss the cache.
+ * ====================================================================================================================
+ * @param <K> Type of the key.
+ * @param <V> Type of the result.
+ * @author Shubham Chatterjee
+ * @version 10/17/2026
+ */
+
+public class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong shared = new AtomicLong();
+
+    /**
+     * Get the result for a key, making the call only if no call for the key is in flight.
+     * @param key K Key.
+     * @param call Supplier Call that computes the result.
+     * @return V Result of the call (made by this thread or by another one).
+     */
+
+    public V run(@NotNull K key, @NotNull Supplier<V> call) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            shared.incrementAndGet();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        calls.incrementAndGet();
+        try {
+            V result = call.get();
+            future.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Asynchronous version of run().
+     * @param key K Key.
+     * @param call Supplier Call that starts the request.
+     * @return CompletableFuture Result of the call (started by this thread or by another one).
+     */
+
+    @NotNull
+    public CompletableFuture<V> runAsync(@NotNull K key, @NotNull Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            shared.incrementAndGet();
+            return existing;
+        }
+        calls.incrementAndGet();
+        CompletableFuture<V> started;
+        try {
+            started = call.get();
+        } catch (RuntimeException e) {
+            started = new CompletableFuture<>();
+            started.completeExceptionally(e);
+        }
+        started.whenComplete((result, e) -> {
+            inFlight.remove(key, future);
+            if (e != null) {
+                future.completeExceptionally(e);
+            } else {
+                future.complete(result);
+            }
+        });
+        return future;
+    }
+
+    /** Number of calls made. */
+    public long getCalls() {
+        return calls.get();
+    }
+
+    /** Number of callers that waited for a call made by another caller instead of making their own. */
+    public long getShared() {
+        return shared.get();
+    }
+
+    /** Number of calls in flight. */
+    public int inFlight() {
+        return inFlight.size();
+    }
+}
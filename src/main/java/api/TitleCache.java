@@ -0,0 +1,212 @@
+package api;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ====================================================================================================================
+ * A process-wide cache of (Wikipedia title, Wikipedia ID) mappings used by WATApi.TitleResolver.
+ * (1) The in-memory cache is bounded: least recently used titles are evicted when it is full.
+ * (2) Unresolved titles (for which WAT returns -1) are cached too, so they are not asked for again.
+ * (3) Optionally, every new mapping is appended to a tab-separated backing file which is preloaded at startup,
+ *     so title resolution is a local lookup after the first run.
+ * The cache is split into segments, each with its own lock, so it can be shared across parallel streams.
+ * ====================================================================================================================
+ * @author Shubham Chatterjee
+ * @version 10/17/2026
+ */
+
+public class TitleCache {
+
+    private static final int NUM_SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[NUM_SEGMENTS];
+    private final Path file;
+    private BufferedWriter writer;
+
+    /**
+     * Constructor for an in-memory cache.
+     * @param maxSize Integer Maximum number of titles kept in memory.
+     */
+
+    public TitleCache(int maxSize) {
+        this(maxSize, null);
+    }
+
+    /**
+     * Constructor for a cache with a persistent backing file.
+     * The file is preloaded if it exists.
+     * @param maxSize Integer Maximum number of titles kept in memory.
+     * @param file String Path to the backing file (may be null).
+     */
+
+    public TitleCache(int maxSize, @Nullable String file) {
+        int segmentSize = Math.max(1, maxSize / NUM_SEGMENTS);
+        for (int i = 0; i < NUM_SEGMENTS; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+        this.file = file != null ? Paths.get(file) : null;
+        if (this.file != null) {
+            preload();
+        }
+    }
+
+    /**
+     * Look up a title.
+     * @param title String Wikipedia title.
+     * @return Integer The cached Wikipedia ID (-1 for a title known to be unresolvable), or null if not cached.
+     */
+
+    @Nullable
+    public Integer get(@NotNull String title) {
+        return segment(title).get(title);
+    }
+
+    /**
+     * Cache a title.
+     * @param title String Wikipedia title.
+     * @param id Integer Wikipedia ID (-1 if WAT could not resolve the title).
+     */
+
+    public void put(@NotNull String title, int id) {
+        Integer old = segment(title).put(title, id);
+        if (file != null && (old == null || old != id)) {
+            append(title, id);
+        }
+    }
+
+    /**
+     * Number of titles in memory.
+     * @return Integer
+     */
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Flush the backing file.
+     */
+
+    public synchronized void flush() {
+        if (writer != null) {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                System.err.println("ERROR in TitleCache.flush(): " + e.getClass().getCanonicalName());
+            }
+        }
+    }
+
+    /**
+     * Flush and close the backing file.
+     */
+
+    public synchronized void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                System.err.println("ERROR in TitleCache.close(): " + e.getClass().getCanonicalName());
+            }
+            writer = null;
+        }
+    }
+
+    private Segment segment(@NotNull String title) {
+        int h = title.hashCode();
+        return segments[(h ^ (h >>> 16)) & (NUM_SEGMENTS - 1)];
+    }
+
+    /**
+     * Read the backing file into memory. Later lines override earlier ones.
+     */
+
+    private void preload() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (BufferedReader br = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                int tab = line.lastIndexOf('\t');
+                if (tab <= 0) {
+                    continue;
+                }
+                try {
+                    String title = line.substring(0, tab);
+                    segment(title).put(title, Integer.parseInt(line.substring(tab + 1)));
+                } catch (NumberFormatException e) {
+                    // Skip a partially written line
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("ERROR in TitleCache.preload(): " + e.getClass().getCanonicalName());
+        }
+    }
+
+    private synchronized void append(@NotNull String title, int id) {
+        if (title.indexOf('\n') >= 0 || title.indexOf('\t') >= 0) {
+            return;
+        }
+        try {
+            if (writer == null) {
+                if (file.getParent() != null) {
+                    Files.createDirectories(file.getParent());
+                }
+                writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            writer.write(title);
+            writer.write('\t');
+            writer.write(Integer.toString(id));
+            writer.newLine();
+        } catch (IOException e) {
+            System.err.println("ERROR in TitleCache.append(): " + e.getClass().getCanonicalName());
+        }
+    }
+
+    /**
+     * One LRU segment of the cache.
+     */
+
+    private static final class Segment {
+        private final LinkedHashMap<String, Integer> map;
+
+        Segment(final int maxSize) {
+            this.map = new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        synchronized Integer get(String title) {
+            return map.get(title);
+        }
+
+        synchronized Integer put(String title, int id) {
+            return map.put(title, id);
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+    }
+}
@@ -1,18 +1,27 @@
 package api;
 
+import help.IntDoubleHashMap;
+import org.apache.http.NameValuePair;
+import org.apache.http.message.BasicNameValuePair;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
-import org.jsoup.Connection;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * ====================================================================================================================
@@ -99,6 +108,19 @@ public class WATApi {
 
     public static class EntityLinker {
         private final static String URL = "https://wat.d4science.org/wat/tag/tag ";
+        private final static String METHOD = "spotter:includeUserHint=true:includeNamedEntity=true:includeNounPhrase=true,prior:k=50,filter-valid,centroid:rescore=true,topk:k=5,voting:relatedness=lm,ranker:model=0046.model,confidence:model=pruner-wiki.linear";
+
+        /**
+         * Request parameters (other than the text) that change the annotations. Part of the annotation cache key.
+         */
+        private final static String CACHE_PARAMS = "lang=en&tokenizer=nlp4j&debug=9&method=" + METHOD;
+
+        /**
+         * Cache of annotated texts.
+         * If "-Dwat.cache.dir=DIR" is given, the cache is backed by DIR/wat-annotations.bin.
+         */
+        private static volatile AnnotationCache cache = AnnotationCache.open(System.getProperty("wat.cache.dir"),
+                "wat-annotations.bin");
 
         /**
          * Method to return the annotations in the text.
@@ -108,20 +130,29 @@ public class WATApi {
 
         @NotNull
         private static ArrayList<Annotation> getAnnotations(String data) {
-            ArrayList<Annotation> annotations = new ArrayList<>();
-            Document doc = null;
+            String response = getResponse(data);
 
-            try {
+            if (response == null) {
+                //System.err.println("ERROR: Server returned null.");
+                return new ArrayList<>();
+            }
+            return parseAnnotations(response);
+        }
 
-                doc = getDocument(data);
+        /**
+         * Parse the annotations in the response of WAT.
+         * @param response String Response body.
+         * @return List List of annotations.
+         */
 
-                if (doc == null) {
-                    //System.err.println("ERROR: Server returned null.");
-                    return annotations;
-                }
+        @NotNull
+        private static ArrayList<Annotation> parseAnnotations(@NotNull String response) {
+            ArrayList<Annotation> annotations = new ArrayList<>();
+
+            try {
 
-                if (doc.text() != null) {
-                    JSONObject json = new JSONObject(doc.text());
+                if (!response.isEmpty()) {
+                    JSONObject json = new JSONObject(response);
                     if (json.has("annotations")) {
                         JSONArray jsonArray = json.getJSONArray("annotations");
                         for (int i = 0; i < jsonArray.length(); i++) {
@@ -167,7 +198,53 @@ public class WATApi {
 
         @NotNull
         public static ArrayList<Annotation> getAnnotations(String data, double rho) {
-            ArrayList<Annotation> allAnnotations = getAnnotations(data);
+            return filter(getAnnotations(data), rho);
+        }
+
+        /**
+         * Asynchronous version of getAnnotations().
+         * The request is sent through the shared ApiClient; the future completes with an empty list on error.
+         * @param data String The text to annotate.
+         * @param rho Double Minimum annotation accuracy.
+         * @return CompletableFuture List of annotations.
+         */
+
+        @NotNull
+        public static CompletableFuture<ArrayList<Annotation>> getAnnotationsAsync(String data, double rho) {
+            AnnotationCache c = cache;
+            String key = c != null ? AnnotationCache.key("wat", CACHE_PARAMS, data) : null;
+            String cached = key != null ? c.get(key) : null;
+            if (cached != null) {
+                return CompletableFuture.completedFuture(filter(parseAnnotations(cached), rho));
+            }
+            return ApiClient.getInstance().getAsync(URL, params(data)).handle((response, e) -> {
+                if (e != null) {
+                    System.err.println("ERROR in EntityLinker.getAnnotationsAsync(): " + errorName(e));
+                    return new ArrayList<>();
+                }
+                if (key != null) {
+                    c.put(key, response);
+                }
+                return filter(parseAnnotations(response), rho);
+            });
+        }
+
+        /**
+         * Use the given annotation cache (null to disable caching).
+         * @param annotationCache AnnotationCache
+         */
+
+        public static void setCache(@Nullable AnnotationCache annotationCache) {
+            cache = annotationCache;
+        }
+
+        @Nullable
+        public static AnnotationCache getCache() {
+            return cache;
+        }
+
+        @NotNull
+        private static ArrayList<Annotation> filter(@NotNull ArrayList<Annotation> allAnnotations, double rho) {
 
             if (rho == 0.0d) {
                 return allAnnotations;
@@ -184,29 +261,43 @@ public class WATApi {
 
         /**
          * Helper method to connect to the URL.
+         * Texts annotated before are served from the annotation cache.
          * @param data String The text to annotate.
-         * @return Document Jsoup document
+         * @return String Response body, or null on error.
          */
 
         @Nullable
-        private static Document getDocument(String data) {
-            Document doc;
+        private static String getResponse(String data) {
+            AnnotationCache c = cache;
+            String key = c != null ? AnnotationCache.key("wat", CACHE_PARAMS, data) : null;
+            if (key != null) {
+                String cached = c.get(key);
+                if (cached != null) {
+                    return cached;
+                }
+            }
             try {
-                doc = Jsoup.connect(URL)
-                        .data("lang", "en")
-                        .data("gcube-token", TOKEN)
-                        .data("text", data)
-                        .data("tokenizer", "nlp4j")
-                        .data("debug", "9")
-                        .data("method", "spotter:includeUserHint=true:includeNamedEntity=true:includeNounPhrase=true,prior:k=50,filter-valid,centroid:rescore=true,topk:k=5,voting:relatedness=lm,ranker:model=0046.model,confidence:model=pruner-wiki.linear")
-                        .timeout(50 * 1000)
-                        .ignoreContentType(true)
-                        .get();
+                String response = ApiClient.getInstance().get(URL, params(data));
+                if (key != null) {
+                    c.put(key, response);
+                }
+                return response;
             } catch (IOException e) {
-                System.err.println("ERROR in EntityLinker.getDocument(): " + e.getClass().getCanonicalName());
+                System.err.println("ERROR in EntityLinker.getResponse(): " + e.getClass().getCanonicalName());
                 return null;
             }
-            return doc;
+        }
+
+        @NotNull
+        private static List<NameValuePair> params(String data) {
+            List<NameValuePair> params = new ArrayList<>();
+            params.add(new BasicNameValuePair("lang", "en"));
+            params.add(new BasicNameValuePair("gcube-token", TOKEN));
+            params.add(new BasicNameValuePair("text", data));
+            params.add(new BasicNameValuePair("tokenizer", "nlp4j"));
+            params.add(new BasicNameValuePair("debug", "9"));
+            params.add(new BasicNameValuePair("method", METHOD));
+            return params;
         }
     }
 
@@ -217,6 +308,34 @@ public class WATApi {
     public static class  EntityRelatedness {
         private final static String URL = "https://wat.d4science.org/wat/relatedness/graph";
 
+        /**
+         * Persistent cache of relatedness scores.
+         * Enabled by passing "-Dwat.cache.dir=DIR" to the JVM or by calling setCache().
+         */
+        private static volatile RelatednessCache cache = openCache(System.getProperty("wat.cache.dir"));
+
+        /**
+         * Precomputed relatedness matrices, one file "DIR/<measure>.mat" per relatedness measure.
+         * Enabled by passing "-Dwat.matrix.dir=DIR" to the JVM. Pairs missing from the matrix fall back to the cache
+         * and then to WAT.
+         */
+        private static final String MATRIX_DIR = System.getProperty("wat.matrix.dir");
+        private static final Map<String, Optional<RelatednessMatrix>> matrices = new ConcurrentHashMap<>();
+
+        /**
+         * Relatedness requests in flight. Concurrent requests for the same pair, or the same batch, share one call.
+         * Every call looks the scores up again before it sends a request, because a caller may have missed the cache
+         * just before a call for the same pair stored the scores and finished.
+         */
+        private static final SingleFlight<String, Double> scoreFlights = new SingleFlight<>();
+        private static final SingleFlight<String, List<Pair>> flights = new SingleFlight<>();
+
+        /**
+         * Default number of candidate IDs sent with the target in one batched request.
+         * WAT computes all pairs of a request, so the server-side cost grows quadratically with this number.
+         */
+        public final static int BATCH_SIZE = 32;
+
         public static class Pair {
 
             private static class Entry {
@@ -317,16 +436,54 @@ public class WATApi {
 
         @NotNull
         public static List<Pair> getRelatedness(String relMeasure, int ... ids) {
-            List<Pair> relatedPairsList = new ArrayList<>();
+            String response = getResponse(relMeasure, ids);
+            if (response == null) {
+                return new ArrayList<>();
+            }
+            return parsePairs(response);
+        }
 
-            Document doc;
+        /**
+         * Asynchronous version of getRelatedness().
+         * The request is sent through the shared ApiClient; the future completes with an empty list on error.
+         * Results are added to the relatedness cache but the cache is not consulted.
+         * @param relMeasure String Relatedness function to compute (see getRelatedness()).
+         * @param ids List of Wikipedia entity IDs.
+         * @return CompletableFuture List of Pairs of entities with relatedness score.
+         */
 
-            try {
+        @NotNull
+        public static CompletableFuture<List<Pair>> getRelatednessAsync(String relMeasure, int ... ids) {
+            return ApiClient.getInstance().getAsync(URL, params(relMeasure, ids)).handle((response, e) -> {
+                if (e != null) {
+                    System.err.println("ERROR in EntityRelatedness.getRelatednessAsync(): " + errorName(e));
+                    return new ArrayList<>();
+                }
+                List<Pair> pairs = parsePairs(response);
+                RelatednessCache c = cache;
+                if (c != null) {
+                    for (Pair pair : pairs) {
+                        c.put(relMeasure, pair.getSource().getId(), pair.getDestination().getId(), pair.getRelatedness());
+                    }
+                }
+                return pairs;
+            });
+        }
 
-                doc = getDocument(relMeasure, ids);
+        /**
+         * Parse the pairs in the response of WAT.
+         * @param response String Response body.
+         * @return List List of Pairs of entities with relatedness score.
+         */
+
+        @NotNull
+        private static List<Pair> parsePairs(@NotNull String response) {
+            List<Pair> relatedPairsList = new ArrayList<>();
 
-                if (doc != null) {
-                    JSONObject json = new JSONObject(doc.text());
+            try {
+
+                if (!response.isEmpty()) {
+                    JSONObject json = new JSONObject(response);
                     if (json.has("pairs")) {
                         JSONArray jsonArray = json.getJSONArray("pairs");
                         for (int i = 0; i < jsonArray.length(); i++) {
@@ -370,7 +527,230 @@ public class WATApi {
         }
 
         /**
-         * Get the Jsoup document.
+         * Get the relatedness between two entities.
+         * The score is served from the relatedness cache (if enabled) and only fetched from WAT on a miss.
+         * Failed requests are not cached.
+         * @param relMeasure String Relatedness function to compute (see getRelatedness()).
+         * @param id1 Integer Wikipedia ID of the first entity.
+         * @param id2 Integer Wikipedia ID of the second entity.
+         * @return Double Relatedness score (0.0 if WAT did not return a score).
+         */
+
+        public static double getRelatednessScore(String relMeasure, int id1, int id2) {
+            RelatednessCache c = cache;
+            double cached = lookup(relMeasure, id1, id2, c);
+            if (!Double.isNaN(cached)) {
+                return cached;
+            }
+            String key = relMeasure + ":" + Math.min(id1, id2) + ":" + Math.max(id1, id2);
+            return scoreFlights.run(key, () -> {
+                double score = lookup(relMeasure, id1, id2, c);
+                if (!Double.isNaN(score)) {
+                    return score;
+                }
+                List<Pair> result = getRelatedness(relMeasure, id1, id2);
+                if (result.isEmpty()) {
+                    return 0.0d;
+                }
+                if (c != null) {
+                    c.put(relMeasure, id1, id2, result.get(0).getRelatedness());
+                }
+                return result.get(0).getRelatedness();
+            });
+        }
+
+        /**
+         * Get the relatedness between a target entity and many candidate entities.
+         * The WAT graph endpoint returns the relatedness of every pair of IDs sent in a request, so the candidates
+         * are sent in chunks of at most batchSize IDs (plus the target) and only the pairs involving the target
+         * are kept. Cached pairs are not requested again and every pair returned by WAT is added to the cache.
+         * Candidates with an invalid ID, or for which WAT returned nothing, are absent from the result.
+         * @param relMeasure String Relatedness function to compute (see getRelatedness()).
+         * @param targetId Integer Wikipedia ID of the target entity.
+         * @param candidateIds Array of Wikipedia IDs of candidate entities.
+         * @param batchSize Integer Maximum number of candidate IDs per request.
+         * @return IntDoubleHashMap Map of (candidate ID, relatedness with target).
+         */
+
+        @NotNull
+        public static IntDoubleHashMap getRelatednessBatch(String relMeasure,
+                                                           int targetId,
+                                                           @NotNull int[] candidateIds,
+                                                           int batchSize) {
+            IntDoubleHashMap scores = new IntDoubleHashMap(candidateIds.length);
+            RelatednessCache c = cache;
+
+            if (targetId <= 0) {
+                return scores;
+            }
+
+            // Find the candidates which are not cached yet
+            int[] misses = new int[candidateIds.length];
+            int numMisses = 0;
+            for (int id : candidateIds) {
+                if (id <= 0 || scores.containsKey(id)) {
+                    continue;
+                }
+                if (id == targetId) {
+                    scores.put(id, 1.0d);
+                    continue;
+                }
+                double score = lookup(relMeasure, targetId, id, c);
+                if (!Double.isNaN(score)) {
+                    scores.put(id, score);
+                } else {
+                    scores.put(id, Double.NaN); // Placeholder to de-duplicate the misses
+                    misses[numMisses++] = id;
+                }
+            }
+
+            // Fetch the misses in chunks.
+            // The misses are sorted, so that callers with the same target and candidates send identical chunks,
+            // which are then coalesced into one request.
+            Arrays.sort(misses, 0, numMisses);
+            for (int from = 0; from < numMisses; from += batchSize) {
+                int to = Math.min(numMisses, from + batchSize);
+                int[] ids = new int[to - from + 1];
+                ids[0] = targetId;
+                System.arraycopy(misses, from, ids, 1, to - from);
+
+                List<Pair> pairs = flights.run(relMeasure + ":" + Arrays.toString(ids), () -> {
+                    // Only request the candidates which are still not cached
+                    int[] request = new int[ids.length];
+                    int length = 0;
+                    request[length++] = targetId;
+                    for (int i = 1; i < ids.length; i++) {
+                        if (Double.isNaN(lookup(relMeasure, targetId, ids[i], c))) {
+                            request[length++] = ids[i];
+                        }
+                    }
+                    if (length == 1) {
+                        return Collections.emptyList();
+                    }
+                    List<Pair> result = getRelatedness(relMeasure, Arrays.copyOf(request, length));
+                    if (c != null) {
+                        for (Pair pair : result) {
+                            c.put(relMeasure, pair.getSource().getId(), pair.getDestination().getId(),
+                                    pair.getRelatedness());
+                        }
+                    }
+                    return result;
+                });
+
+                for (Pair pair : pairs) {
+                    int src = pair.getSource().getId(), dst = pair.getDestination().getId();
+                    if (src == targetId && dst != targetId) {
+                        scores.put(dst, pair.getRelatedness());
+                    } else if (dst == targetId && src != targetId) {
+                        scores.put(src, pair.getRelatedness());
+                    }
+                }
+
+                // Candidates cached by another call in the meantime were not requested
+                for (int i = 1; i < ids.length; i++) {
+                    if (Double.isNaN(scores.get(ids[i], Double.NaN))) {
+                        double score = lookup(relMeasure, targetId, ids[i], c);
+                        if (!Double.isNaN(score)) {
+                            scores.put(ids[i], score);
+                        }
+                    }
+                }
+            }
+
+            // Drop the candidates WAT did not return
+            IntDoubleHashMap result = new IntDoubleHashMap(scores.size());
+            for (int id : scores.keys()) {
+                double score = scores.get(id, Double.NaN);
+                if (!Double.isNaN(score)) {
+                    result.put(id, score);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Get the relatedness between a target entity and many candidate entities in chunks of BATCH_SIZE IDs.
+         * @see #getRelatednessBatch(String, int, int[], int)
+         */
+
+        @NotNull
+        public static IntDoubleHashMap getRelatednessBatch(String relMeasure, int targetId, @NotNull int[] candidateIds) {
+            return getRelatednessBatch(relMeasure, targetId, candidateIds, BATCH_SIZE);
+        }
+
+        /**
+         * Look up a pair in the precomputed matrix of the measure, then in the cache.
+         * @return Double The score, or Double.NaN if the pair is in neither.
+         */
+
+        private static double lookup(String relMeasure, int id1, int id2, @Nullable RelatednessCache c) {
+            RelatednessMatrix matrix = getMatrix(relMeasure);
+            double score = matrix != null ? matrix.get(id1, id2) : Double.NaN;
+            if (Double.isNaN(score) && c != null) {
+                score = c.get(relMeasure, id1, id2);
+            }
+            return score;
+        }
+
+        /**
+         * Get the precomputed matrix of a relatedness measure.
+         * @param relMeasure String Relatedness measure.
+         * @return RelatednessMatrix The matrix, or null if "-Dwat.matrix.dir" is not given or has no matrix for the
+         * measure.
+         */
+
+        @Nullable
+        public static RelatednessMatrix getMatrix(String relMeasure) {
+            if (MATRIX_DIR == null || MATRIX_DIR.isEmpty()) {
+                return null;
+            }
+            return matrices.computeIfAbsent(relMeasure, m -> {
+                String file = MATRIX_DIR + "/" + m + ".mat";
+                if (!Files.exists(Paths.get(file))) {
+                    return Optional.empty();
+                }
+                try {
+                    RelatednessMatrix matrix = RelatednessMatrix.open(file);
+                    System.err.println("Using precomputed " + m + " relatedness for " + matrix.size() + " pairs.");
+                    return Optional.of(matrix);
+                } catch (IOException e) {
+                    System.err.println("ERROR in EntityRelatedness.getMatrix(): " + e.getClass().getCanonicalName());
+                    return Optional.empty();
+                }
+            }).orElse(null);
+        }
+
+        /**
+         * Use the given relatedness cache (null to disable caching).
+         * @param relatednessCache RelatednessCache
+         */
+
+        public static void setCache(@Nullable RelatednessCache relatednessCache) {
+            cache = relatednessCache;
+        }
+
+        @Nullable
+        public static RelatednessCache getCache() {
+            return cache;
+        }
+
+        @Nullable
+        private static RelatednessCache openCache(@Nullable String dir) {
+            if (dir == null || dir.isEmpty()) {
+                return null;
+            }
+            try {
+                RelatednessCache relatednessCache = new RelatednessCache(dir);
+                Runtime.getRuntime().addShutdownHook(new Thread(relatednessCache::close));
+                return relatednessCache;
+            } catch (IOException e) {
+                System.err.println("ERROR in EntityRelatedness.openCache(): " + e.getClass().getCanonicalName());
+                return null;
+            }
+        }
+
+        /**
+         * Get the response of WAT.
          * @param relMeasure Relatedness function to compute.
          *                   Accepted values are:
          *                   (1) mw (Milne-Witten)
@@ -382,25 +762,28 @@ public class WATApi {
          *                   (7) pmi (Pointwise Mutual Information)
          *
          * @param ids List of Wikipedia entity IDs.
-         * @return Document Jsoup Document
+         * @return String Response body, or null on error.
          */
 
-        private static Document getDocument(String relMeasure, @NotNull int[] ids) {
-            Document doc = null;
+        @Nullable
+        private static String getResponse(String relMeasure, @NotNull int[] ids) {
             try {
-                Connection con  = Jsoup.connect(URL)
-                                    .data("gcube-token", TOKEN)
-                                    .data("relatedness", relMeasure)
-                                    .ignoreContentType(true);
-
-                for (int id : ids) {
-                    con.data("ids",Integer.toString(id));
-                }
-                doc = con.timeout(50 * 1000).get();
+                return ApiClient.getInstance().get(URL, params(relMeasure, ids));
             } catch (IOException e) {
-                System.err.println("ERROR in EntityRelatedness.getDocument(): " + e.getClass().getCanonicalName());
+                System.err.println("ERROR in EntityRelatedness.getResponse(): " + e.getClass().getCanonicalName());
+                return null;
+            }
+        }
+
+        @NotNull
+        private static List<NameValuePair> params(String relMeasure, @NotNull int[] ids) {
+            List<NameValuePair> params = new ArrayList<>();
+            params.add(new BasicNameValuePair("gcube-token", TOKEN));
+            params.add(new BasicNameValuePair("relatedness", relMeasure));
+            for (int id : ids) {
+                params.add(new BasicNameValuePair("ids", Integer.toString(id)));
             }
-            return doc;
+            return params;
         }
     }
 
@@ -413,16 +796,119 @@ public class WATApi {
     public static class TitleResolver {
         private final static String URL = "https://wat.d4science.org/wat/title";
 
+        /**
+         * Process-wide cache of resolved titles.
+         * Bounded by "-Dwat.title.cache.size=N" (default 1000000). If "-Dwat.cache.dir=DIR" is given, the cache is
+         * backed by DIR/titles.tsv, which is preloaded at startup.
+         */
+        private static volatile TitleCache cache = openCache(System.getProperty("wat.cache.dir"),
+                Integer.getInteger("wat.title.cache.size", 1000000));
+
+        /**
+         * Title resolutions in flight. Concurrent requests for the same title share one call.
+         */
+        private static final SingleFlight<String, Integer> flights = new SingleFlight<>();
+
+        /**
+         * Get the Wikipedia ID of a title.
+         * Titles are resolved through the title cache; only titles not seen before are sent to WAT.
+         * A title that WAT could not resolve (-1) is cached as well, a failed request (0) is not.
+         * @param title String Wikipedia title.
+         * @return Integer Wikipedia ID, -1 if the title does not exist, 0 on error.
+         */
+
         public static int getId(String title) {
-            Document doc;
+            TitleCache c = cache;
+            if (c == null) {
+                return resolve(title);
+            }
+            Integer cached = c.get(title);
+            if (cached != null) {
+                return cached;
+            }
+            return flights.run(title, () -> {
+                // A call for the same title may have cached it after the lookup above
+                Integer resolved = c.get(title);
+                if (resolved != null) {
+                    return resolved;
+                }
+                int id = resolve(title);
+                if (id != 0) {
+                    c.put(title, id);
+                }
+                return id;
+            });
+        }
+
+        /**
+         * Asynchronous version of getId().
+         * Cached titles complete immediately; other titles are sent through the shared ApiClient.
+         * @param title String Wikipedia title.
+         * @return CompletableFuture Wikipedia ID, -1 if the title does not exist, 0 on error.
+         */
+
+        @NotNull
+        public static CompletableFuture<Integer> getIdAsync(String title) {
+            TitleCache c = cache;
+            Integer cached = c != null ? c.get(title) : null;
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+            return flights.runAsync(title, () -> {
+                Integer resolved = c != null ? c.get(title) : null;
+                if (resolved != null) {
+                    return CompletableFuture.completedFuture(resolved);
+                }
+                return ApiClient.getInstance().getAsync(URL, params(title)).handle((response, e) -> {
+                    if (e != null) {
+                        System.err.println("ERROR in TitleResolver.getIdAsync(): " + errorName(e));
+                        return 0;
+                    }
+                    int id = parseId(response);
+                    if (c != null && id != 0) {
+                        c.put(title, id);
+                    }
+                    return id;
+                });
+            });
+        }
+
+        /**
+         * Use the given title cache (null to disable caching).
+         * @param titleCache TitleCache
+         */
+
+        public static void setCache(@Nullable TitleCache titleCache) {
+            cache = titleCache;
+        }
+
+        @Nullable
+        public static TitleCache getCache() {
+            return cache;
+        }
+
+        @NotNull
+        private static TitleCache openCache(@Nullable String dir, int maxSize) {
+            if (dir == null || dir.isEmpty()) {
+                return new TitleCache(maxSize);
+            }
+            TitleCache titleCache = new TitleCache(maxSize, dir + "/titles.tsv");
+            Runtime.getRuntime().addShutdownHook(new Thread(titleCache::close));
+            return titleCache;
+        }
+
+        private static int resolve(String title) {
+            String response = getResponse(title);
+            return response != null ? parseId(response) : 0;
+        }
+
+        private static int parseId(@NotNull String response) {
             int id = 0;
 
             try {
 
-                doc = getDocument(title);
-
-                if (doc != null) {
-                    JSONObject json = new JSONObject(doc.text());
+                if (!response.isEmpty()) {
+                    JSONObject json = new JSONObject(response);
                     if (json.has("wiki_id")) {
                         id = json.getInt("wiki_id");
                     } else {
@@ -436,20 +922,23 @@ public class WATApi {
 
         }
 
-        private static Document getDocument(String data) {
-            Document doc = null;
+        @Nullable
+        private static String getResponse(String data) {
             try {
-                doc = Jsoup.connect(URL)
-                        .data("lang", "en")
-                        .data("gcube-token", TOKEN)
-                        .data("title", data)
-                        .ignoreContentType(true)
-                        .timeout(50 * 10000)
-                        .get();
+                return ApiClient.getInstance().get(URL, params(data));
             } catch (IOException e) {
-                System.err.println("ERROR in TitleResolver.getDocument(): " + e.getClass().getCanonicalName());
+                System.err.println("ERROR in TitleResolver.getResponse(): " + e.getClass().getCanonicalName());
+                return null;
             }
-            return doc;
+        }
+
+        @NotNull
+        private static List<NameValuePair> params(String data) {
+            List<NameValuePair> params = new ArrayList<>();
+            params.add(new BasicNameValuePair("lang", "en"));
+            params.add(new BasicNameValuePair("gcube-token", TOKEN));
+            params.add(new BasicNameValuePair("title", data));
+            return params;
         }
     }
 
@@ -570,15 +1059,15 @@ public class WATApi {
         @Contract("_ -> new")
         public static SurfaceForm getInformation(String data) {
 
-            Document doc;
+            String response;
             int id = 0;
             double linkProbability = 0.0d, termProbability = 0.0d, documentProbability = 0.0d, idf = 0.0d, tf_idf = 0.0d;
             int tf = 0, df = 0;
             ArrayList<SurfaceForm.LinkedEntity> linkedEntities = new ArrayList<>();
             try {
-                doc = getDocument(data);
-                if (doc.text() != null) {
-                    JSONObject json = new JSONObject(doc.text());
+                response = getResponse(data);
+                if (response != null && !response.isEmpty()) {
+                    JSONObject json = new JSONObject(response);
                     id = json.has("id")
                             ? json.getInt("id")
                             : 0;
@@ -627,23 +1116,32 @@ public class WATApi {
                     idf, tf_idf, tf, df, linkedEntities);
         }
 
-        private static Document getDocument(String data) {
-            Document doc = null;
+        @Nullable
+        private static String getResponse(String data) {
+            List<NameValuePair> params = new ArrayList<>();
+            params.add(new BasicNameValuePair("gcube-token", TOKEN));
+            params.add(new BasicNameValuePair("text", data));
             try {
-                doc = Jsoup.connect(URL)
-                        .data("gcube-token", TOKEN)
-                        .data("text", data)
-                        .ignoreContentType(true)
-                        .timeout(50 * 1000)
-                        .get();
+                return ApiClient.getInstance().get(URL, params);
             } catch (IOException e) {
-                System.err.println("ERROR in EntitySurfaceFormInformation.getDocument(): " + e.getClass().getCanonicalName());
+                System.err.println("ERROR in EntitySurfaceFormInformation.getResponse(): " + e.getClass().getCanonicalName());
+                return null;
             }
-            return doc;
         }
 
     }
 
+    /**
+     * Name of the error that made an asynchronous request fail.
+     * @param e Throwable The exception the future completed with.
+     * @return String
+     */
+
+    private static String errorName(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return cause.getClass().getCanonicalName();
+    }
+
     /**
      * Utility method to find the Wikipedia page title corresponding to the id.
      * Sort of a hack!!
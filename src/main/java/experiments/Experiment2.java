@@ -7,13 +7,11 @@ import json.Aspect;
 import json.JsonObject;
 import json.ReadJsonlFile;
 import lucene.Index;
+import lucene.ResultCache;
 import me.tongfei.progressbar.ProgressBar;
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
-import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
-import org.apache.lucene.index.Term;
 import org.apache.lucene.search.*;
 import org.apache.lucene.search.similarities.BM25Similarity;
 import org.apache.lucene.search.similarities.LMDirichletSimilarity;
@@ -24,9 +22,9 @@ import org.jetbrains.annotations.NotNull;
 import org.json.simple.JSONObject;
 
 import java.io.IOException;
-import java.io.StringReader;
 import java.util.*;
 import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
 /**
  * =====================================================Experiment-2=======================================
@@ -112,7 +110,8 @@ public class Experiment2 {
         }
 
         System.out.print("Setting up index for use...");
-        searcher = new Index.Setup(indexDir, "text", analyzer, similarity).getSearcher();
+        Index.Setup setup = new Index.Setup(indexDir, "text", analyzer, similarity, parallel);
+        searcher = setup.getSearcher();
         this.analyzer = analyzer;
         System.out.println("[Done].");
 
@@ -137,7 +136,11 @@ public class Experiment2 {
         }
         System.out.println("[Done].");
 
+        // Pseudo-documents are built for the context entities
+        setup.warmUp(contextEntityMap.values().stream().flatMap(map -> map.keySet().stream())
+                .collect(Collectors.toList()));
         score(runFilePath, jsonObjectList, useRelatedness);
+        System.out.println(ResultCache.getInstance());
 
     }
 
@@ -307,15 +310,7 @@ public class Experiment2 {
                 if (id == entityId) {
                     relatedness = 1.0d;
                 } else {
-                    List<WATApi.EntityRelatedness.Pair> pair = new ArrayList<>();
-                    try {
-                        pair = WATApi.EntityRelatedness.getRelatedness(relType, id, entityId);
-                        relatedness = pair.get(0).getRelatedness();
-                    } catch (IndexOutOfBoundsException e) {
-                        System.err.print("ERROR: IndexOutOfBoundsException");
-                        System.out.println(pair);
-                        relatedness = 0.0d;
-                    }
+                    relatedness = WATApi.EntityRelatedness.getRelatednessScore(relType, id, entityId);
                 }
                 sum += (relatedness * entityScore);
             }
@@ -370,7 +365,8 @@ public class Experiment2 {
         Map<String, Double> aspectScores = new HashMap<>();
         // Create the pseudo-document for the entity
         // We use a candidate set retrieved using the entity name as the query to create the pseudo-document
-        PseudoDocument pseudoDocument = createPseudoDocument(entity);
+        PseudoDocument pseudoDocument = Utilities.createPseudoDocument(entity, PseudoDocument.TOP_N,
+                analyzer, searcher);
 
         if (pseudoDocument != null) {
 
@@ -428,8 +424,9 @@ public class Experiment2 {
         double score = 0.0d;
 
         for (String aspectEntity : aspectEntityList) {
-            if (distribution.containsKey(aspectEntity.toLowerCase())) {
-                score += distribution.get(aspectEntity.toLowerCase());
+            Double probability = distribution.get(aspectEntity.toLowerCase());
+            if (probability != null) {
+                score += probability;
             }
         }
         return score;
@@ -445,127 +442,8 @@ public class Experiment2 {
 
     @NotNull
     private Map<String, Double> getDistribution(@NotNull PseudoDocument pseudoDocument) {
-        HashMap<String, Integer> freqMap = new HashMap<>();
-
-        // Get the list of co-occurring entities
-        ArrayList<String> pseudoDocEntityList = pseudoDocument.getEntityList();
-
-        // For every co-occurring entity do
-        for (String e : pseudoDocEntityList) {
-
-            // Find the frequency of this entity in the pseudo-document and store it
-            freqMap.put(e, Utilities.frequency(e, pseudoDocEntityList));
-        }
-
-        // Convert this frequency map to a distribution
-
-        return normalize(freqMap);
-    }
-    /**
-     * Normalize a map.
-     * @param rankings Map
-     * @return Map
-     */
-    @NotNull
-    private LinkedHashMap<String, Double> normalize(@NotNull Map<String, Integer> rankings) {
-        LinkedHashMap<String, Double> normRankings = new LinkedHashMap<>();
-        double sum = 0.0d;
-        for (double score : rankings.values()) {
-            sum += score;
-        }
-
-        for (String s : rankings.keySet()) {
-            double normScore = rankings.get(s) / sum;
-            normRankings.put(s,normScore);
-        }
-        return normRankings;
-    }
-
-    /**
-     * Create a pseudo-document for the entity using passages from Wikipedia.
-     * @param entity String
-     * @return PseudoDocument
-     */
-
-    private PseudoDocument createPseudoDocument(String entity) {
-
-        // Get the top-N passages for the the entity.
-        // Here we treat the Query = Entity name
-        ArrayList<String> searchResults = getTopDocs(entity,100); // N = 100
-
-        // Now create the pseudo-document for the entity
-        return Utilities.createPseudoDocument(entity, searchResults, searcher);
-
-    }
-
-    /**
-     * Searches a Lucene index for a query and returns top-K results.
-     * @param entity String
-     * @param topKDocs Integer
-     * @return List
-     */
-
-    @NotNull
-    private ArrayList<String> getTopDocs(@NotNull String entity, int topKDocs) {
-        ArrayList<String> searchResults = new ArrayList<>();
-        String query = entity.replaceAll("_", " ").toLowerCase();
-        BooleanQuery booleanQuery;
-        TopDocs topDocs;
-        try {
-            booleanQuery = toQuery(query, "text", analyzer);
-            topDocs = Index.Search.searchIndex(booleanQuery, topKDocs, searcher);
-            ScoreDoc[] retDocs = topDocs.scoreDocs;
-            for (ScoreDoc retDoc : retDocs) {
-                searchResults.add(searcher.doc(retDoc.doc).get("id"));
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        return searchResults;
-    }
-
-    /**
-     * Converts a string query to a BooleanQuery.
-     * @param queryStr String
-     * @param searchField String
-     * @param analyzer Analyzer
-     * @return BooleanQuery
-     * @throws IOException
-     */
-
-    private BooleanQuery toQuery(String queryStr, String searchField, Analyzer analyzer) throws IOException {
-        List<String> tokens = new ArrayList<>();
-
-        tokenizeQuery(queryStr, searchField, tokens, analyzer);
-        BooleanQuery.Builder booleanQuery = new BooleanQuery.Builder();
-
-        for (String token : tokens) {
-            booleanQuery.add(new TermQuery(new Term(searchField, token)), BooleanClause.Occur.SHOULD);
-        }
-        return booleanQuery.build();
-    }
-
-    /**
-     * Tokenize a query.
-     * @param queryStr String
-     * @param searchField String
-     * @param tokens List
-     * @param analyzer Analyzer
-     * @throws IOException
-     */
-
-    private void tokenizeQuery(String queryStr, String searchField, @NotNull List<String> tokens, @NotNull Analyzer analyzer) throws IOException {
-        TokenStream tokenStream = analyzer.tokenStream(searchField, new StringReader(queryStr));
-        tokenStream.reset();
-        tokens.clear();
-        while (tokenStream.incrementToken() && tokens.size() < 64)
-        {
-            final String token = tokenStream.getAttribute(CharTermAttribute.class).toString();
-            tokens.add(token);
-        }
-        tokenStream.end();
-        tokenStream.close();
+        // The frequency distribution of the co-occurring entities, counted once per pseudo-document
+        return pseudoDocument.getEntityDistribution();
     }
 
     /**
@@ -1,19 +1,18 @@
 package experiments;
 
 import api.WATApi;
+import help.IntDoubleHashMap;
 import help.PseudoDocument;
 import help.Utilities;
 import json.Aspect;
 import json.JsonObject;
 import json.ReadJsonlFile;
 import lucene.Index;
+import lucene.ResultCache;
 import me.tongfei.progressbar.ProgressBar;
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
-import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
-import org.apache.lucene.index.Term;
 import org.apache.lucene.search.*;
 import org.apache.lucene.search.similarities.BM25Similarity;
 import org.apache.lucene.search.similarities.LMDirichletSimilarity;
@@ -24,10 +23,10 @@ import org.jetbrains.annotations.NotNull;
 import org.json.simple.JSONObject;
 
 import java.io.IOException;
-import java.io.StringReader;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
 /**
  * ===========================================Experiment-3======================================================
@@ -110,7 +109,8 @@ public class Experiment3 {
 
 
         System.out.print("Setting up index for use...");
-        searcher = new Index.Setup(indexDir, "text", analyzer, similarity).getSearcher();
+        Index.Setup setup = new Index.Setup(indexDir, "text", analyzer, similarity, parallel);
+        searcher = setup.getSearcher();
         this.analyzer = analyzer;
         System.out.println("[Done].");
 
@@ -135,7 +135,11 @@ public class Experiment3 {
         }
         System.out.println("[Done].");
 
+        // Pseudo-documents are built for the context entities
+        setup.warmUp(contextEntityMap.values().stream().flatMap(map -> map.keySet().stream())
+                .collect(Collectors.toList()));
         score(runFilePath, jsonObjectList);
+        System.out.println(ResultCache.getInstance());
 
     }
 
@@ -298,7 +302,8 @@ public class Experiment3 {
         Map<String, Double> aspectScores = new HashMap<>();
         // Create the pseudo-document for the entity
         // We use a candidate set retrieved using the entity name as the query to create the pseudo-document
-        PseudoDocument pseudoDocument = createPseudoDocument(entity);
+        PseudoDocument pseudoDocument = Utilities.createPseudoDocument(entity, PseudoDocument.TOP_N,
+                analyzer, searcher);
 
         if (pseudoDocument != null) {
 
@@ -379,12 +384,8 @@ public class Experiment3 {
         // Get the list of co-occurring entities
         Set<String> pseudoDocEntitySet = new HashSet<>(pseudoDocument.getEntityList());
 
-        // For every co-occurring entity do
-        for (String e : pseudoDocEntitySet) {
-
-            // Find the frequency of this entity in the pseudo-document and store it
-            relMap.put(e, getRelatedness(entityID, idContext, unprocess(e)));
-        }
+        // Find the relatedness of every co-occurring entity with the target entity using batched requests
+        relMap.putAll(getRelatedness(entityID, idContext, pseudoDocEntitySet));
 
         return relMap;
     }
@@ -392,13 +393,19 @@ public class Experiment3 {
 
     /**
      * Helper method.
-     * Returns the relatedness between between two entities.
-     * @param targetEntityId String First Entity.
-     * @param contextEntityId String Second Entity
-     * @return Double Relatedness
+     * Returns the relatedness between the target entity and every co-occurring entity.
+     * The Wikipedia IDs are resolved once per entity and the relatedness is fetched from WAT in batches.
+     * @param targetEntityId String Target entity.
+     * @param targetIdContext String Context of the target entity.
+     * @param pseudoDocEntitySet Set Co-occurring entities.
+     * @return Map of (co-occurring entity, relatedness)
      */
 
-    private double getRelatedness(@NotNull String targetEntityId, String targetIdContext, String contextEntityId) {
+    @NotNull
+    private Map<String, Double> getRelatedness(@NotNull String targetEntityId,
+                                               String targetIdContext,
+                                               @NotNull Set<String> pseudoDocEntitySet) {
+        Map<String, Double> relMap = new HashMap<>();
         Map<String, Integer> targetEntityMap;
 
         if (contextEntityMap.containsKey(targetIdContext)) {
@@ -407,123 +414,43 @@ public class Experiment3 {
             targetEntityMap = new HashMap<>();
         }
 
-        int id1, id2;
-        String s1 = targetEntityId.substring(targetEntityId.indexOf(":") + 1).replaceAll("%20", "_");
-        String s2 = contextEntityId.substring(contextEntityId.indexOf(":") + 1).replaceAll("%20", "_");
-
-        if (targetEntityId.equalsIgnoreCase(contextEntityId)) {
-            return 1.0d;
-        }
-
-        if (targetEntityMap.containsKey(s1)) {
-            id1 = targetEntityMap.get(s1);
-        } else {
-            id1 = WATApi.TitleResolver.getId(s1);
-        }
-
-        if (targetEntityMap.containsKey(s2)) {
-            id2 = targetEntityMap.get(s2);
-        } else {
-            id2 = WATApi.TitleResolver.getId(s2);
-        }
-
-        if (id1 < 0 || id2 < 0) {
-            return 0.0d;
-        }
-
-        List<WATApi.EntityRelatedness.Pair> pair = WATApi.EntityRelatedness.getRelatedness(relType,id1, id2);
-        if (!pair.isEmpty()) {
-            return pair.get(0).getRelatedness();
-        } else {
-            return 0.0d;
-        }
-    }
-
-    /**
-     * Create a pseudo-document for the entity using passages from Wikipedia.
-     * @param entity String
-     * @return PseudoDocument
-     */
+        int targetId = getId(targetEntityId, targetEntityMap);
+        Map<String, Integer> idMap = new HashMap<>();
 
-    private PseudoDocument createPseudoDocument(String entity) {
-
-        // Get the top-N passages for the the entity.
-        // Here we treat the Query = Entity name
-        ArrayList<String> searchResults = getTopDocs(entity,100); // N = 100
-
-        // Now create the pseudo-document for the entity
-        return Utilities.createPseudoDocument(entity, searchResults, searcher);
-
-    }
-
-    /**
-     * Searches a Lucene index for a query and returns top-K results.
-     * @param entity String
-     * @param topKDocs Integer
-     * @return List
-     */
-
-    @NotNull
-    private ArrayList<String> getTopDocs(@NotNull String entity, int topKDocs) {
-        ArrayList<String> searchResults = new ArrayList<>();
-        String query = entity.replaceAll("_", " ").toLowerCase();
-        BooleanQuery booleanQuery;
-        TopDocs topDocs;
-        try {
-            booleanQuery = toQuery(query, "text", analyzer);
-            topDocs = Index.Search.searchIndex(booleanQuery, topKDocs, searcher);
-            ScoreDoc[] retDocs = topDocs.scoreDocs;
-            for (ScoreDoc retDoc : retDocs) {
-                searchResults.add(searcher.doc(retDoc.doc).get("id"));
+        for (String e : pseudoDocEntitySet) {
+            String contextEntityId = unprocess(e);
+            if (targetEntityId.equalsIgnoreCase(contextEntityId)) {
+                relMap.put(e, 1.0d);
+            } else {
+                idMap.put(e, getId(contextEntityId, targetEntityMap));
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
 
-        return searchResults;
-    }
-
-    /**
-     * Converts a string query to a BooleanQuery.
-     * @param queryStr String
-     * @param searchField String
-     * @param analyzer Analyzer
-     * @return BooleanQuery
-     * @throws IOException
-     */
-
-    private BooleanQuery toQuery(String queryStr, String searchField, Analyzer analyzer) throws IOException {
-        List<String> tokens = new ArrayList<>();
-
-        tokenizeQuery(queryStr, searchField, tokens, analyzer);
-        BooleanQuery.Builder booleanQuery = new BooleanQuery.Builder();
+        int[] ids = idMap.values().stream().mapToInt(Integer::intValue).filter(id -> id > 0).toArray();
+        IntDoubleHashMap scores = targetId > 0
+                ? WATApi.EntityRelatedness.getRelatednessBatch(relType, targetId, ids)
+                : new IntDoubleHashMap();
 
-        for (String token : tokens) {
-            booleanQuery.add(new TermQuery(new Term(searchField, token)), BooleanClause.Occur.SHOULD);
+        for (Map.Entry<String, Integer> entry : idMap.entrySet()) {
+            relMap.put(entry.getKey(), scores.get(entry.getValue(), 0.0d));
         }
-        return booleanQuery.build();
+        return relMap;
     }
 
     /**
-     * Tokenize a query.
-     * @param queryStr String
-     * @param searchField String
-     * @param tokens List
-     * @param analyzer Analyzer
-     * @throws IOException
+     * Helper method.
+     * Returns the Wikipedia ID of an entity, using the IDs provided with the data if available.
+     * @param entityId String Entity.
+     * @param targetEntityMap Map of (entity, Wikipedia ID) provided with the data.
+     * @return Integer Wikipedia ID
      */
 
-    private void tokenizeQuery(String queryStr, String searchField, @NotNull List<String> tokens, @NotNull Analyzer analyzer) throws IOException {
-        TokenStream tokenStream = analyzer.tokenStream(searchField, new StringReader(queryStr));
-        tokenStream.reset();
-        tokens.clear();
-        while (tokenStream.incrementToken() && tokens.size() < 64)
-        {
-            final String token = tokenStream.getAttribute(CharTermAttribute.class).toString();
-            tokens.add(token);
+    private int getId(@NotNull String entityId, @NotNull Map<String, Integer> targetEntityMap) {
+        String s = entityId.substring(entityId.indexOf(":") + 1).replaceAll("%20", "_");
+        if (targetEntityMap.containsKey(s)) {
+            return targetEntityMap.get(s);
         }
-        tokenStream.end();
-        tokenStream.close();
+        return WATApi.TitleResolver.getId(s);
     }
 
 
@@ -1,6 +1,7 @@
 package experiments;
 
 import api.WATApi;
+import help.LinkGraph;
 import help.Utilities;
 import json.Aspect;
 import json.JsonObject;
@@ -44,6 +45,7 @@ public class Experiment5 {
     private Map<String, HashMap<String, Integer>> contextEntityMap = new ConcurrentHashMap<>();
     private Map<String, HashMap<String, HashMap<String, Integer>>> aspectEntityMap = new HashMap<>();
     private String relType;
+    private LinkGraph linkGraph = null;
     boolean parallel;
 
     public Experiment5(String pageIndexDir,
@@ -112,9 +114,21 @@ public class Experiment5 {
         System.out.println("[Done].");
 
         System.out.print("Setting up page index for use...");
-        pageIndexSearcher = new Index.Setup(pageIndexDir, "OutlinkIds", analyzer, similarity).getSearcher();
+        pageIndexSearcher = new Index.Setup(pageIndexDir, "OutlinkIds", analyzer, similarity, parallel).getSearcher();
         System.out.println("[Done].");
 
+        if (LinkGraph.supports(relType) && "local".equalsIgnoreCase(System.getProperty("rel.engine"))) {
+            System.out.print("Loading link graph from page index...");
+            try {
+                linkGraph = LinkGraph.open(pageIndexSearcher.getIndexReader(), System.getProperty("rel.graph.file"));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            System.out.println("[Done].");
+            System.out.println("Computing " + this.relType + " relatedness locally over " +
+                    (linkGraph != null ? linkGraph.size() : 0) + " pages.");
+        }
+
         score(outputFilePath, jsonObjectList, useRelatedness);
 
     }
@@ -287,6 +301,10 @@ public class Experiment5 {
             return 1.0d;
         }
 
+        if (linkGraph != null) {
+            return linkGraph.relatedness(relType, targetEntityId, contextEntityId);
+        }
+
         if (targetEntityMap.containsKey(s1)) {
             id1 = targetEntityMap.get(s1);
         } else {
@@ -303,12 +321,7 @@ public class Experiment5 {
             return 0.0d;
         }
 
-        List<WATApi.EntityRelatedness.Pair> pair = WATApi.EntityRelatedness.getRelatedness(relType,id1, id2);
-        if (!pair.isEmpty()) {
-            return pair.get(0).getRelatedness();
-        } else {
-            return 0.0d;
-        }
+        return WATApi.EntityRelatedness.getRelatednessScore(relType, id1, id2);
     }
 
     private void makeRunFileStrings(JSONObject jsonObject,
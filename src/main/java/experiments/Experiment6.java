@@ -3,18 +3,19 @@ package experiments;
 
 import api.WATApi;
 import help.EntityRMExpand;
+import help.LinkGraph;
 import help.Utilities;
 import json.Aspect;
 import json.JsonObject;
 import json.ReadJsonlFile;
+import lucene.AspectIndex;
+import lucene.AspectScorer;
 import lucene.Index;
-import lucene.RAMIndex;
 import me.tongfei.progressbar.ProgressBar;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
@@ -53,7 +54,12 @@ public class Experiment6 {
     private final boolean omitQueryTerms; // Omit query terms or not when calculating expansion terms
     private final Analyzer analyzer; // Analyzer to use
     private String relType;
+    private LinkGraph linkGraph = null;
     private final boolean parallel;
+    // Scorer of the candidate aspects, one per thread (the aspects are indexed with EnglishAnalyzer and BM25)
+    private final ThreadLocal<AspectScorer> aspectScorers = ThreadLocal.withInitial(() ->
+            new AspectScorer(new EnglishAnalyzer(), "text", new BM25Similarity()));
+    private AspectIndex aspectIndex = null;
 
     public Experiment6(String pageIndexDir,
                        String mainDir,
@@ -115,11 +121,43 @@ public class Experiment6 {
         System.out.println("Found: " + jsonObjectList.size() + " JSON objects.");
 
         System.out.print("Setting up page index for use...");
-        pageIndexSearcher = new Index.Setup(pageIndexDir, "OutlinkIds", analyzer, similarity).getSearcher();
+        pageIndexSearcher = new Index.Setup(pageIndexDir, "OutlinkIds", analyzer, similarity, parallel).getSearcher();
         System.out.println("[Done].");
 
+        if (LinkGraph.supports(relType) && "local".equalsIgnoreCase(System.getProperty("rel.engine"))) {
+            System.out.print("Loading link graph from page index...");
+            try {
+                linkGraph = LinkGraph.open(pageIndexSearcher.getIndexReader(), System.getProperty("rel.graph.file"));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            System.out.println("[Done].");
+            System.out.println("Computing " + this.relType + " relatedness locally over " +
+                    (linkGraph != null ? linkGraph.size() : 0) + " pages.");
+        }
+
+        if (System.getProperty("aspect.index") != null) {
+            System.out.print("Setting up the global aspect index...");
+            try {
+                aspectIndex = AspectIndex.open(System.getProperty("aspect.index"), jsonObjectList);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            System.out.println("[Done].");
+            System.out.println("Scoring the candidate aspects with the statistics of " +
+                    (aspectIndex != null ? aspectIndex.size() : 0) + " aspects.");
+        }
+
         score(outputFilePath, jsonObjectList);
 
+        if (aspectIndex != null) {
+            try {
+                aspectIndex.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
 
     }
 
@@ -194,18 +232,15 @@ public class Experiment6 {
 
         //////////////////////////////////////Build the index of aspects/////////////////////////////////
 
-        // First create the IndexWriter
-        IndexWriter iw = RAMIndex.createWriter(new EnglishAnalyzer());
-
-        // Now create the index
-        RAMIndex.createIndex(candidateAspects, iw);
-
-        // Create the IndexSearcher
-        IndexSearcher is = null;
-        try {
-            is = RAMIndex.createSearcher(new BM25Similarity(), iw);
-        } catch (IOException e) {
-            e.printStackTrace();
+        // Index the candidate aspects in the scorer of this thread (not needed with the global aspect index)
+        AspectScorer aspectScorer = aspectScorers.get();
+        if (aspectIndex == null) {
+            try {
+                aspectScorer.index(candidateAspects);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return aspectScores;
+            }
         }
 
         /////////////////////////////////////////////////////////////////////////////////////////////////
@@ -228,15 +263,10 @@ public class Experiment6 {
         }
 
         // Now search the query
-        assert is != null;
-        aspectScores = Utilities.sortByValueDescending(RAMIndex.searchIndex(booleanQuery, n, is));
-
-        // Close the aspect index
-        try {
-            RAMIndex.close(iw);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        assert booleanQuery != null;
+        aspectScores = Utilities.sortByValueDescending(aspectIndex != null
+                ? aspectIndex.search(booleanQuery, candidateAspects, n)
+                : aspectScorer.search(booleanQuery, n));
         //////////////////////////////////////////////////////////////////////////////////////////////////
 
         return aspectScores;
@@ -250,10 +280,13 @@ public class Experiment6 {
         String info = "6-qe-rel-page-entity-" + relType;
         Map<String, Double> sortedScoreMap = Utilities.sortByValueDescending(scoreMap);
 
-        for (String idAspect : sortedScoreMap.keySet()) {
-            runFileString = idContext + " " + "0" + " " + idAspect + " " +
-                    rank++ + " " + sortedScoreMap.get(idAspect) + " "+ info ;
-            runFileStrings.add(runFileString);
+        // The mentions may be scored in parallel
+        synchronized (runFileStrings) {
+            for (String idAspect : sortedScoreMap.keySet()) {
+                runFileString = idContext + " " + "0" + " " + idAspect + " " +
+                        rank++ + " " + sortedScoreMap.get(idAspect) + " "+ info ;
+                runFileStrings.add(runFileString);
+            }
         }
     }
 
@@ -312,6 +345,10 @@ public class Experiment6 {
             return 1.0d;
         }
 
+        if (linkGraph != null) {
+            return linkGraph.relatedness(relType, targetEntityId, contextEntityId);
+        }
+
         if (targetEntityMap.containsKey(s1)) {
             id1 = targetEntityMap.get(s1);
         } else {
@@ -328,12 +365,7 @@ public class Experiment6 {
             return 0.0d;
         }
 
-        List<WATApi.EntityRelatedness.Pair> pair = WATApi.EntityRelatedness.getRelatedness(relType,id1, id2);
-        if (!pair.isEmpty()) {
-            return pair.get(0).getRelatedness();
-        } else {
-            return 0.0d;
-        }
+        return WATApi.EntityRelatedness.getRelatednessScore(relType, id1, id2);
     }
 
     /**
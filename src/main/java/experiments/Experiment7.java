@@ -2,21 +2,20 @@ package experiments;
 
 import api.WATApi;
 import help.EntityRMExpand;
+import help.IntDoubleHashMap;
 import help.PseudoDocument;
 import help.Utilities;
 import json.Aspect;
 import json.JsonObject;
 import json.ReadJsonlFile;
+import lucene.AspectIndex;
+import lucene.AspectScorer;
 import lucene.Index;
-import lucene.RAMIndex;
+import lucene.ResultCache;
 import me.tongfei.progressbar.ProgressBar;
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
-import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
-import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.Term;
 import org.apache.lucene.search.*;
 import org.apache.lucene.search.similarities.BM25Similarity;
 import org.apache.lucene.search.similarities.LMDirichletSimilarity;
@@ -26,10 +25,10 @@ import org.jetbrains.annotations.NotNull;
 import org.json.simple.JSONObject;
 
 import java.io.IOException;
-import java.io.StringReader;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
 /**
  * ===============================================Experiment-7=========================================
@@ -54,6 +53,10 @@ public class Experiment7 {
     private final Analyzer analyzer; // Analyzer to use
     private String relType;
     private final boolean parallel;
+    // Scorer of the candidate aspects, one per thread (the aspects are indexed with EnglishAnalyzer and BM25)
+    private final ThreadLocal<AspectScorer> aspectScorers = ThreadLocal.withInitial(() ->
+            new AspectScorer(new EnglishAnalyzer(), "text", new BM25Similarity()));
+    private AspectIndex aspectIndex = null;
 
     public Experiment7(String indexDir,
                        String mainDir,
@@ -117,15 +120,38 @@ public class Experiment7 {
         }
 
         System.out.print("Setting up index for use...");
-        searcher = new Index.Setup(indexDir, "text", analyzer, similarity).getSearcher();
+        Index.Setup setup = new Index.Setup(indexDir, "text", analyzer, similarity, parallel);
+        searcher = setup.getSearcher();
         System.out.println("[Done].");
 
         System.out.print("Reading the JSON-L file...");
         List<JSONObject> jsonObjectList = ReadJsonlFile.read(jsonFilePath);
         System.out.println("[Done].");
         System.out.println("Found: " + jsonObjectList.size() + " JSON objects.");
+        setup.warmUp(jsonObjectList.stream().map(JsonObject::getEntityName).collect(Collectors.toList()));
+
+        if (System.getProperty("aspect.index") != null) {
+            System.out.print("Setting up the global aspect index...");
+            try {
+                aspectIndex = AspectIndex.open(System.getProperty("aspect.index"), jsonObjectList);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            System.out.println("[Done].");
+            System.out.println("Scoring the candidate aspects with the statistics of " +
+                    (aspectIndex != null ? aspectIndex.size() : 0) + " aspects.");
+        }
 
         score(runFilePath, jsonObjectList, useRelatedness);
+
+        if (aspectIndex != null) {
+            try {
+                aspectIndex.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        System.out.println(ResultCache.getInstance());
     }
     /**
      * Method to score.
@@ -179,7 +205,8 @@ public class Experiment7 {
         Map<String, Double> aspectScores = new HashMap<>();
         // Create the pseudo-document for the entity
         // We use a candidate set retrieved using the entity name as the query to create the pseudo-document
-        PseudoDocument pseudoDocument = createPseudoDocument(entityName);
+        PseudoDocument pseudoDocument = Utilities.createPseudoDocument(entityName, PseudoDocument.TOP_N,
+                analyzer, searcher);
 
         if (pseudoDocument != null) {
 
@@ -221,18 +248,15 @@ public class Experiment7 {
 
         //////////////////////////////////////Build the index of aspects/////////////////////////////////
 
-        // First create the IndexWriter
-        IndexWriter iw = RAMIndex.createWriter(new EnglishAnalyzer());
-
-        // Now create the index
-        RAMIndex.createIndex(candidateAspects, iw);
-
-        // Create the IndexSearcher
-        IndexSearcher is = null;
-        try {
-            is = RAMIndex.createSearcher(new BM25Similarity(), iw);
-        } catch (IOException e) {
-            e.printStackTrace();
+        // Index the candidate aspects in the scorer of this thread (not needed with the global aspect index)
+        AspectScorer aspectScorer = aspectScorers.get();
+        if (aspectIndex == null) {
+            try {
+                aspectScorer.index(candidateAspects);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return aspectScores;
+            }
         }
 
         /////////////////////////////////////////////////////////////////////////////////////////////////
@@ -255,15 +279,10 @@ public class Experiment7 {
         }
 
         // Search the aspect index
-        assert is != null;
-        aspectScores = Utilities.sortByValueDescending(RAMIndex.searchIndex(booleanQuery, n, is));
-
-        // Close the aspect index
-        try {
-            RAMIndex.close(iw);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        assert booleanQuery != null;
+        aspectScores = Utilities.sortByValueDescending(aspectIndex != null
+                ? aspectIndex.search(booleanQuery, candidateAspects, n)
+                : aspectScorer.search(booleanQuery, n));
 
         //////////////////////////////////////////////////////////////////////////////////////////////////
 
@@ -284,10 +303,13 @@ public class Experiment7 {
         } else {
             info = "7a-freq-dist";
         }
-        for (String idAspect : sortedScoreMap.keySet()) {
-            runFileString = idContext + " " + "0" + " " + idAspect + " " +
-                    rank++ + " " + sortedScoreMap.get(idAspect) + " "+ info ;
-            runFileStrings.add(runFileString);
+        // The mentions may be scored in parallel
+        synchronized (runFileStrings) {
+            for (String idAspect : sortedScoreMap.keySet()) {
+                runFileString = idContext + " " + "0" + " " + idAspect + " " +
+                        rank++ + " " + sortedScoreMap.get(idAspect) + " "+ info ;
+                runFileStrings.add(runFileString);
+            }
         }
     }
     /**
@@ -314,21 +336,8 @@ public class Experiment7 {
 
     @NotNull
     private Map<String, Double> getFrequencyDistribution(@NotNull PseudoDocument pseudoDocument) {
-        HashMap<String, Integer> freqMap = new HashMap<>();
-
-        // Get the list of co-occurring entities
-        ArrayList<String> pseudoDocEntityList = pseudoDocument.getEntityList();
-
-        // For every co-occurring entity do
-        for (String e : pseudoDocEntityList) {
-
-            // Find the frequency of this entity in the pseudo-document and store it
-            freqMap.put(e, Utilities.frequency(e, pseudoDocEntityList));
-        }
-
-        // Convert this frequency map to a distribution
-
-        return normalize(freqMap);
+        // The frequency distribution of the co-occurring entities, counted once per pseudo-document
+        return pseudoDocument.getEntityDistribution();
     }
 
     @NotNull
@@ -339,12 +348,8 @@ public class Experiment7 {
         // Get the list of co-occurring entities
         Set<String> pseudoDocEntitySet = new HashSet<>(pseudoDocument.getEntityList());
 
-        // For every co-occurring entity do
-        for (String e : pseudoDocEntitySet) {
-
-            // Find the frequency of this entity in the pseudo-document and store it
-            relMap.put(e, getRelatedness(entityID, idContext, unprocess(e)));
-        }
+        // Find the relatedness of every co-occurring entity with the target entity using batched requests
+        relMap.putAll(getRelatedness(entityID, idContext, pseudoDocEntitySet));
 
         return relMap;
     }
@@ -365,14 +370,20 @@ public class Experiment7 {
 
     /**
      * Helper method.
-     * Returns the relatedness between between two entities.
-     * @param targetEntityId String First Entity.
-     * @param contextEntityId String Second Entity
-     * @return Double Relatedness
+     * Returns the relatedness between the target entity and every co-occurring entity.
+     * The Wikipedia IDs are resolved once per entity and the relatedness is fetched from WAT in batches.
+     * @param targetEntityId String Target entity.
+     * @param targetIdContext String Context of the target entity.
+     * @param pseudoDocEntitySet Set Co-occurring entities.
+     * @return Map of (co-occurring entity, relatedness)
      */
 
-    private double getRelatedness(@NotNull String targetEntityId, String targetIdContext, String contextEntityId) {
-        HashMap<String, Integer> targetEntityMap;
+    @NotNull
+    private Map<String, Double> getRelatedness(@NotNull String targetEntityId,
+                                               String targetIdContext,
+                                               @NotNull Set<String> pseudoDocEntitySet) {
+        Map<String, Double> relMap = new HashMap<>();
+        Map<String, Integer> targetEntityMap;
 
         if (contextEntityMap.containsKey(targetIdContext)) {
             targetEntityMap = contextEntityMap.get(targetIdContext);
@@ -380,146 +391,46 @@ public class Experiment7 {
             targetEntityMap = new HashMap<>();
         }
 
-        int id1, id2;
-        String s1 = targetEntityId.substring(targetEntityId.indexOf(":") + 1).replaceAll("%20", "_");
-        String s2 = contextEntityId.substring(contextEntityId.indexOf(":") + 1).replaceAll("%20", "_");
-
-        if (targetEntityId.equalsIgnoreCase(contextEntityId)) {
-            return 1.0d;
-        }
-
-        if (targetEntityMap.containsKey(s1)) {
-            id1 = targetEntityMap.get(s1);
-        } else {
-            id1 = WATApi.TitleResolver.getId(s1);
-        }
-
-        if (targetEntityMap.containsKey(s2)) {
-            id2 = targetEntityMap.get(s2);
-        } else {
-            id2 = WATApi.TitleResolver.getId(s2);
-        }
-
-        if (id1 < 0 || id2 < 0) {
-            return 0.0d;
-        }
-
-        List<WATApi.EntityRelatedness.Pair> pair = WATApi.EntityRelatedness.getRelatedness(relType,id1, id2);
-        if (!pair.isEmpty()) {
-            return pair.get(0).getRelatedness();
-        } else {
-            return 0.0d;
-        }
-    }
-
-
-    /**
-     * Normalize a map.
-     * @param rankings Map
-     * @return Map
-     */
-    @NotNull
-    private LinkedHashMap<String, Double> normalize(@NotNull Map<String, Integer> rankings) {
-        LinkedHashMap<String, Double> normRankings = new LinkedHashMap<>();
-        double sum = 0.0d;
-        for (double score : rankings.values()) {
-            sum += score;
-        }
-
-        for (String s : rankings.keySet()) {
-            double normScore = rankings.get(s) / sum;
-            normRankings.put(s,normScore);
-        }
-        return normRankings;
-    }
-
-    /**
-     * Create a pseudo-document for the entity using passages from Wikipedia.
-     * @param entity String
-     * @return PseudoDocument
-     */
-
-    private PseudoDocument createPseudoDocument(String entity) {
+        int targetId = getId(targetEntityId, targetEntityMap);
+        Map<String, Integer> idMap = new HashMap<>();
 
-        // Get the top-N passages for the the entity.
-        // Here we treat the Query = Entity name
-        ArrayList<String> searchResults = getTopDocs(entity,100); // N = 100
-
-        // Now create the pseudo-document for the entity
-        return Utilities.createPseudoDocument(entity, searchResults, searcher);
-
-    }
-
-    /**
-     * Searches a Lucene index for a query and returns top-K results.
-     * @param entity String
-     * @param topKDocs Integer
-     * @return List
-     */
-
-    @NotNull
-    private ArrayList<String> getTopDocs(@NotNull String entity, int topKDocs) {
-        ArrayList<String> searchResults = new ArrayList<>();
-        String query = entity.replaceAll("_", " ").toLowerCase();
-        BooleanQuery booleanQuery;
-        TopDocs topDocs;
-        try {
-            booleanQuery = toQuery(query, "text", analyzer);
-            topDocs = Index.Search.searchIndex(booleanQuery, topKDocs, searcher);
-            ScoreDoc[] retDocs = topDocs.scoreDocs;
-            for (ScoreDoc retDoc : retDocs) {
-                searchResults.add(searcher.doc(retDoc.doc).get("id"));
+        for (String e : pseudoDocEntitySet) {
+            String contextEntityId = unprocess(e);
+            if (targetEntityId.equalsIgnoreCase(contextEntityId)) {
+                relMap.put(e, 1.0d);
+            } else {
+                idMap.put(e, getId(contextEntityId, targetEntityMap));
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
 
-        return searchResults;
-    }
-
-    /**
-     * Converts a string query to a BooleanQuery.
-     * @param queryStr String
-     * @param searchField String
-     * @param analyzer Analyzer
-     * @return BooleanQuery
-     * @throws IOException
-     */
-
-    private BooleanQuery toQuery(String queryStr, String searchField, Analyzer analyzer) throws IOException {
-        List<String> tokens = new ArrayList<>();
-
-        tokenizeQuery(queryStr, searchField, tokens, analyzer);
-        BooleanQuery.Builder booleanQuery = new BooleanQuery.Builder();
+        int[] ids = idMap.values().stream().mapToInt(Integer::intValue).filter(id -> id > 0).toArray();
+        IntDoubleHashMap scores = targetId > 0
+                ? WATApi.EntityRelatedness.getRelatednessBatch(relType, targetId, ids)
+                : new IntDoubleHashMap();
 
-        for (String token : tokens) {
-            booleanQuery.add(new TermQuery(new Term(searchField, token)), BooleanClause.Occur.SHOULD);
+        for (Map.Entry<String, Integer> entry : idMap.entrySet()) {
+            relMap.put(entry.getKey(), scores.get(entry.getValue(), 0.0d));
         }
-        return booleanQuery.build();
+        return relMap;
     }
 
     /**
-     * Tokenize a query.
-     * @param queryStr String
-     * @param searchField String
-     * @param tokens List
-     * @param analyzer Analyzer
-     * @throws IOException
+     * Helper method.
+     * Returns the Wikipedia ID of an entity, using the IDs provided with the data if available.
+     * @param entityId String Entity.
+     * @param targetEntityMap Map of (entity, Wikipedia ID) provided with the data.
+     * @return Integer Wikipedia ID
      */
 
-    private void tokenizeQuery(String queryStr, String searchField, @NotNull List<String> tokens, @NotNull Analyzer analyzer) throws IOException {
-        TokenStream tokenStream = analyzer.tokenStream(searchField, new StringReader(queryStr));
-        tokenStream.reset();
-        tokens.clear();
-        while (tokenStream.incrementToken() && tokens.size() < 64)
-        {
-            final String token = tokenStream.getAttribute(CharTermAttribute.class).toString();
-            tokens.add(token);
+    private int getId(@NotNull String entityId, @NotNull Map<String, Integer> targetEntityMap) {
+        String s = entityId.substring(entityId.indexOf(":") + 1).replaceAll("%20", "_");
+        if (targetEntityMap.containsKey(s)) {
+            return targetEntityMap.get(s);
         }
-        tokenStream.end();
-        tokenStream.close();
+        return WATApi.TitleResolver.getId(s);
     }
 
+
     public static void main(@NotNull String[] args) {
         Similarity similarity = null;
         Analyzer analyzer = null;
@@ -1,6 +1,7 @@
 package extra;
 
 import api.WATApi;
+import help.LinkGraph;
 import help.Utilities;
 import json.Aspect;
 import json.JsonObject;
@@ -31,6 +32,7 @@ public class RankRelatedEntitiesOnWikiPage {
     private final ArrayList<String> runFileStrings = new ArrayList<>();
     private Map<String, HashMap<String, Integer>> contextEntityMap = new ConcurrentHashMap<>();
     private String relType;
+    private LinkGraph linkGraph = null;
     boolean parallel;
 
     public RankRelatedEntitiesOnWikiPage(String pageIndexDir,
@@ -88,9 +90,21 @@ public class RankRelatedEntitiesOnWikiPage {
         System.out.println("Found: " + jsonObjectList.size() + " JSON objects.");
 
         System.out.print("Setting up page index for use...");
-        pageIndexSearcher = new Index.Setup(pageIndexDir, "OutlinkIds", analyzer, similarity).getSearcher();
+        pageIndexSearcher = new Index.Setup(pageIndexDir, "OutlinkIds", analyzer, similarity, parallel).getSearcher();
         System.out.println("[Done].");
 
+        if (LinkGraph.supports(relType) && "local".equalsIgnoreCase(System.getProperty("rel.engine"))) {
+            System.out.print("Loading link graph from page index...");
+            try {
+                linkGraph = LinkGraph.open(pageIndexSearcher.getIndexReader(), System.getProperty("rel.graph.file"));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            System.out.println("[Done].");
+            System.out.println("Computing " + this.relType + " relatedness locally over " +
+                    (linkGraph != null ? linkGraph.size() : 0) + " pages.");
+        }
+
         score(outputFilePath, jsonObjectList);
 
     }
@@ -210,6 +224,10 @@ public class RankRelatedEntitiesOnWikiPage {
             return 1.0d;
         }
 
+        if (linkGraph != null) {
+            return linkGraph.relatedness(relType, targetEntityId, contextEntityId);
+        }
+
         if (targetEntityMap.containsKey(s1)) {
             id1 = targetEntityMap.get(s1);
         } else {
@@ -226,12 +244,7 @@ public class RankRelatedEntitiesOnWikiPage {
             return 0.0d;
         }
 
-        List<WATApi.EntityRelatedness.Pair> pair = WATApi.EntityRelatedness.getRelatedness(relType,id1, id2);
-        if (!pair.isEmpty()) {
-            return pair.get(0).getRelatedness();
-        } else {
-            return 0.0d;
-        }
+        return WATApi.EntityRelatedness.getRelatednessScore(relType, id1, id2);
     }
 
     private void makeRunFileStrings(@NotNull List<Aspect> candidateAspects,
@@ -0,0 +1,187 @@
+package help;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ====================================================================================================================
+ * The frequency distribution of the entities of a pseudo-document (see PseudoDocument.getEntityDistribution()): the
+ * probability of an entity is the number of times it occurs in the pseudo-document over the number of entities.
+ * Entities are compared ignoring case, so the keys of the distribution are lowercase. Each entity is interned once to
+ * an integer id (shared by all distributions and threads) and the counts are kept in a primitive IntDoubleHashMap.
+ * It is a read-only Map, so it can be used wherever a Map distribution is; get() and containsKey() are O(1) and do
+ * not box anything but the returned value. The entries are iterated in the same order as a HashMap filled with the
+ * entities in order of first occurrence, so sorting the distribution by value breaks ties the same way every time.
+ * ====================================================================================================================
+ * @author Shubham Chatterjee
+ * @version 10/17/2026
+ */
+
+public class EntityDistribution extends AbstractMap<String, Double> {
+
+    private static final Map<String, Integer> IDS = new ConcurrentHashMap<>();
+    private static final List<String> NAMES = new ArrayList<>();
+
+    private final IntDoubleHashMap probabilities;
+    private final int[] firstSeen;
+    private Set<Entry<String, Double>> entrySet;
+
+    private EntityDistribution(IntDoubleHashMap probabilities, int[] firstSeen) {
+        this.probabilities = probabilities;
+        this.firstSeen = firstSeen;
+    }
+
+    /**
+     * Build the distribution of a list of entities.
+     * @param entityList List Entities (with repetitions).
+     * @return EntityDistribution
+     */
+
+    @NotNull
+    public static EntityDistribution of(@NotNull List<String> entityList) {
+        IntDoubleHashMap counts = new IntDoubleHashMap(entityList.size());
+        int[] firstSeen = new int[entityList.size()];
+        int distinct = 0;
+        int total = 0;
+        for (String entity : entityList) {
+            if (entity != null) {
+                int id = intern(entity.toLowerCase());
+                if (!counts.containsKey(id)) {
+                    firstSeen[distinct++] = id;
+                }
+                counts.add(id, 1.0d);
+                total++;
+            }
+        }
+        for (int i = 0; i < distinct; i++) {
+            counts.put(firstSeen[i], counts.get(firstSeen[i], 0.0d) / total);
+        }
+        return new EntityDistribution(counts, Arrays.copyOf(firstSeen, distinct));
+    }
+
+    /**
+     * Probability of an entity (ignoring case).
+     * @param entity String Entity.
+     * @return Double Probability, or 0 if the entity is not in the distribution.
+     */
+
+    public double probability(@NotNull String entity) {
+        Integer id = IDS.get(entity.toLowerCase());
+        return id != null ? probabilities.get(id, 0.0d) : 0.0d;
+    }
+
+    @Override
+    public Double get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        Integer id = IDS.get(((String) key).toLowerCase());
+        return id != null && probabilities.containsKey(id) ? probabilities.get(id, 0.0d) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return probabilities.size();
+    }
+
+    @NotNull
+    @Override
+    public Set<Entry<String, Double>> entrySet() {
+        if (entrySet == null) {
+            int[] ids = iterationOrder();
+            entrySet = new AbstractSet<Entry<String, Double>>() {
+                @NotNull
+                @Override
+                public Iterator<Entry<String, Double>> iterator() {
+                    return new Iterator<Entry<String, Double>>() {
+                        private int i = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return i < ids.length;
+                        }
+
+                        @Override
+                        public Entry<String, Double> next() {
+                            if (i >= ids.length) {
+                                throw new NoSuchElementException();
+                            }
+                            int id = ids[i++];
+                            return new SimpleImmutableEntry<>(name(id), probabilities.get(id, 0.0d));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return ids.length;
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    /**
+     * Ids of the entities in the order a HashMap filled with them in order of first occurrence iterates them.
+     * @return Array of ids.
+     */
+
+    @NotNull
+    private int[] iterationOrder() {
+        Map<String, Integer> order = new HashMap<>();
+        for (int id : firstSeen) {
+            order.put(name(id), id);
+        }
+        int[] ids = new int[order.size()];
+        int n = 0;
+        for (int id : order.values()) {
+            ids[n++] = id;
+        }
+        return ids;
+    }
+
+    /**
+     * Get the id of an entity, giving it the next id if it has none yet.
+     * @param entity String Entity (lowercase).
+     * @return Integer
+     */
+
+    private static int intern(@NotNull String entity) {
+        Integer id = IDS.get(entity);
+        if (id != null) {
+            return id;
+        }
+        synchronized (NAMES) {
+            id = IDS.get(entity);
+            if (id == null) {
+                id = NAMES.size();
+                NAMES.add(entity);
+                IDS.put(entity, id);
+            }
+            return id;
+        }
+    }
+
+    @NotNull
+    private static String name(int id) {
+        synchronized (NAMES) {
+            return NAMES.get(id);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package help;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from primitive int keys to primitive double values.
+ * Uses open addressing with linear probing, so no Integer/Double boxing is needed.
+ * NOTE: This class is not thread-safe.
+ * @author Shubham Chatterjee
+ * @version 10/17/2026
+ */
+
+public class IntDoubleHashMap {
+    private int[] keys;
+    private double[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;
+
+    /**
+     * Constructor.
+     */
+
+    public IntDoubleHashMap() {
+        this(16);
+    }
+
+    /**
+     * Constructor.
+     * @param expectedSize Integer Expected number of entries.
+     */
+
+    public IntDoubleHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Associate the value with the key, replacing any previous value.
+     * @param key Integer
+     * @param value Double
+     */
+
+    public void put(int key, double value) {
+        int slot = find(key);
+        if (!used[slot]) {
+            if ((size + 1) * 2 > keys.length) {
+                rehash(keys.length << 1);
+                slot = find(key);
+            }
+            used[slot] = true;
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * Get the value for the key.
+     * @param key Integer
+     * @param defaultValue Double Value returned if the key is not present.
+     * @return Double
+     */
+
+    public double get(int key, double defaultValue) {
+        int slot = find(key);
+        return used[slot] ? values[slot] : defaultValue;
+    }
+
+    /**
+     * Add the given amount to the value of the key (a missing key counts as 0).
+     * @param key Integer
+     * @param amount Double
+     */
+
+    public void add(int key, double amount) {
+        put(key, get(key, 0.0d) + amount);
+    }
+
+    public boolean containsKey(int key) {
+        return used[find(key)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get the keys of the map.
+     * @return Array of keys (in no particular order).
+     */
+
+    @NotNull
+    public int[] keys() {
+        int[] result = new int[size];
+        int n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                result[n++] = keys[i];
+            }
+        }
+        return result;
+    }
+
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    private int find(int key) {
+        int slot = mix(key) & mask;
+        while (used[slot] && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        double[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int slot = find(oldKeys[i]);
+                used[slot] = true;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new double[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                if (sb.length() > 1) {
+                    sb.append(", ");
+                }
+                sb.append(keys[i]).append('=').append(values[i]);
+            }
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,466 @@
+package help;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.util.Bits;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * ====================================================================================================================
+ * A local entity relatedness engine over the Wikipedia link graph stored in the page index.
+ * Every page in the index is a node; its "OutlinkIds" are its out-edges. The graph is built once and kept in memory as
+ * two compressed sparse row (CSR) structures of sorted int arrays: one for outlinks and one for inlinks, so the
+ * relatedness of a pair is one merge of two sorted arrays (a few microseconds).
+ * The following measures are supported, as defined by WAT:
+ * (1) mw: Milne-Witten relatedness over inlinks.
+ * (2) jaccard: Jaccard similarity of outlinks.
+ * Entities are identified by their page index ID (for example "enwiki:Barack%20Obama"), so no title resolution is
+ * needed. The graph can be saved to a file and loaded again instead of being rebuilt; the file records the page index
+ * it was built from, and a file built from another index (or another version of it) is rebuilt.
+ * ====================================================================================================================
+ * @author Shubham Chatterjee
+ * @version 10/17/2026
+ */
+
+public class LinkGraph {
+
+    private static final int MAGIC = 0x4C4E4B47; // "LNKG"
+    private static final int VERSION = 2;
+
+    private final String index;       // Identity of the page index the graph was built from (see identity())
+    private final String[] names;     // Sorted entity IDs; the node of an entity is its position
+    private final int[] outStart;     // outTargets[outStart[n] .. outStart[n] + outLength[n]) are the outlinks of n
+    private final int[] outLength;
+    private final int[] outTargets;
+    private final int[] inStart;      // inSources[inStart[n] .. inStart[n + 1]) are the inlinks of n
+    private final int[] inSources;
+
+    private LinkGraph(String index, String[] names, int[] outStart, int[] outLength, int[] outTargets, int[] inStart,
+                      int[] inSources) {
+        this.index = index;
+        this.names = names;
+        this.outStart = outStart;
+        this.outLength = outLength;
+        this.outTargets = outTargets;
+        this.inStart = inStart;
+        this.inSources = inSources;
+    }
+
+    /**
+     * Whether a relatedness measure can be computed locally.
+     * @param relMeasure String Relatedness measure.
+     * @return Boolean
+     */
+
+    public static boolean supports(@NotNull String relMeasure) {
+        return relMeasure.equalsIgnoreCase("mw") || relMeasure.equalsIgnoreCase("jaccard");
+    }
+
+    /**
+     * Get the link graph of a page index.
+     * If the file exists and was saved from the same page index (see identity()) the graph is loaded from it,
+     * otherwise the graph is built from the index and saved to it.
+     * @param reader IndexReader Reader of the page index.
+     * @param file String Path to the saved graph (may be null to always build the graph).
+     * @return LinkGraph
+     * @throws IOException If the index or the file could not be read.
+     */
+
+    @NotNull
+    public static LinkGraph open(@NotNull IndexReader reader, @Nullable String file) throws IOException {
+        if (file != null && Files.exists(Paths.get(file))) {
+            String index = identity(reader);
+            String saved = readIndex(file);
+            if (index.equals(saved)) {
+                return load(file);
+            }
+            System.err.println("WARNING: Link graph " + file + " was not built from this page index (" +
+                    (saved != null ? saved : "older file format") + ", now " + index + "). Rebuilding it.");
+        }
+        LinkGraph graph = build(reader, "Id", "OutlinkIds");
+        if (file != null) {
+            graph.save(file);
+        }
+        return graph;
+    }
+
+    /**
+     * Build the link graph from a page index.
+     * Outlinks to entities that are not pages in the index are ignored.
+     * @param reader IndexReader Reader of the page index.
+     * @param idField String Stored field with the entity ID of the page.
+     * @param outlinkField String Stored field with the newline-separated entity IDs of the outlinks.
+     * @return LinkGraph
+     * @throws IOException If the index could not be read.
+     */
+
+    @NotNull
+    public static LinkGraph build(@NotNull IndexReader reader,
+                                  @NotNull String idField,
+                                  @NotNull String outlinkField) throws IOException {
+        Bits liveDocs = MultiFields.getLiveDocs(reader);
+        int maxDoc = reader.maxDoc();
+
+        // Pass 1: Number the pages.
+        Set<String> idOnly = new HashSet<>(Arrays.asList(idField));
+        List<String> ids = new ArrayList<>(reader.numDocs());
+        for (int d = 0; d < maxDoc; d++) {
+            if (liveDocs == null || liveDocs.get(d)) {
+                String id = reader.document(d, idOnly).get(idField);
+                if (id != null) {
+                    ids.add(id);
+                }
+            }
+        }
+        String[] names = ids.toArray(new String[0]);
+        ids.clear();
+        Arrays.sort(names);
+        int n = 0;
+        for (int i = 0; i < names.length; i++) {
+            if (n == 0 || !names[i].equals(names[n - 1])) {
+                names[n++] = names[i];
+            }
+        }
+        names = Arrays.copyOf(names, n);
+
+        // Pass 2: Outlinks, as sorted node lists appended one page after another.
+        int[] outStart = new int[n];
+        int[] outLength = new int[n];
+        int[] targets = new int[Math.max(16, n * 8)];
+        int size = 0;
+        int[] row = new int[1024];
+        Set<String> fields = new HashSet<>(Arrays.asList(idField, outlinkField));
+        for (int d = 0; d < maxDoc; d++) {
+            if (liveDocs != null && !liveDocs.get(d)) {
+                continue;
+            }
+            Document doc = reader.document(d, fields);
+            int node = find(names, doc.get(idField));
+            String outlinks = doc.get(outlinkField);
+            if (node < 0 || outLength[node] > 0 || outlinks == null || outlinks.isEmpty()) {
+                continue;
+            }
+            int length = 0;
+            for (String outlink : outlinks.split("\n")) {
+                int target = find(names, outlink);
+                if (target >= 0 && target != node) {
+                    if (length == row.length) {
+                        row = Arrays.copyOf(row, length * 2);
+                    }
+                    row[length++] = target;
+                }
+            }
+            Arrays.sort(row, 0, length);
+            length = unique(row, length);
+            if (size + length > targets.length) {
+                targets = Arrays.copyOf(targets, Math.max(size + length, targets.length + (targets.length >> 1)));
+            }
+            System.arraycopy(row, 0, targets, size, length);
+            outStart[node] = size;
+            outLength[node] = length;
+            size += length;
+        }
+        int[] outTargets = Arrays.copyOf(targets, size);
+
+        // Inlinks: count, then fill in order of the source node, so every inlink list comes out sorted.
+        int[] inStart = new int[n + 1];
+        for (int t : outTargets) {
+            inStart[t + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            inStart[i + 1] += inStart[i];
+        }
+        int[] inSources = new int[size];
+        int[] next = Arrays.copyOf(inStart, n);
+        for (int source = 0; source < n; source++) {
+            for (int i = outStart[source], end = i + outLength[source]; i < end; i++) {
+                inSources[next[outTargets[i]]++] = source;
+            }
+        }
+        return new LinkGraph(identity(reader), names, outStart, outLength, outTargets, inStart, inSources);
+    }
+
+    /**
+     * Identity of a page index: its directory and version (which changes with every commit), and its number of
+     * documents. A saved graph is only used with the index it was built from.
+     * @param reader IndexReader Reader of the page index.
+     * @return String
+     */
+
+    @NotNull
+    public static String identity(@NotNull IndexReader reader) {
+        StringBuilder sb = new StringBuilder();
+        if (reader instanceof DirectoryReader) {
+            Directory directory = FilterDirectory.unwrap(((DirectoryReader) reader).directory());
+            sb.append(directory instanceof FSDirectory
+                    ? ((FSDirectory) directory).getDirectory().toAbsolutePath().normalize().toString()
+                    : directory.toString());
+            sb.append(" version=").append(((DirectoryReader) reader).getVersion()).append(' ');
+        }
+        return sb.append("maxDoc=").append(reader.maxDoc()).append(" numDocs=").append(reader.numDocs()).toString();
+    }
+
+    /**
+     * Relatedness between two entities.
+     * @param relMeasure String Relatedness measure (mw or jaccard).
+     * @param entity1 String Page index ID of the first entity.
+     * @param entity2 String Page index ID of the second entity.
+     * @return Double Relatedness, 0 if either entity is not in the graph.
+     */
+
+    public double relatedness(@NotNull String relMeasure, @NotNull String entity1, @NotNull String entity2) {
+        int a = getNode(entity1), b = getNode(entity2);
+        if (a < 0 || b < 0) {
+            return 0.0d;
+        }
+        if (relMeasure.equalsIgnoreCase("mw")) {
+            return milneWitten(a, b);
+        }
+        if (relMeasure.equalsIgnoreCase("jaccard")) {
+            return jaccard(a, b);
+        }
+        throw new IllegalArgumentException("Relatedness measure not supported locally: " + relMeasure);
+    }
+
+    /**
+     * Milne-Witten relatedness of two nodes:
+     * 1 - (log(max(|A|, |B|)) - log(|A n B|)) / (log(|W|) - log(min(|A|, |B|))), where A and B are the inlinks and W
+     * is the set of all pages. Clipped to [0, 1].
+     * @param a Integer Node of the first entity.
+     * @param b Integer Node of the second entity.
+     * @return Double
+     */
+
+    public double milneWitten(int a, int b) {
+        if (a == b) {
+            return 1.0d;
+        }
+        int sizeA = inStart[a + 1] - inStart[a], sizeB = inStart[b + 1] - inStart[b];
+        int common = intersect(inSources, inStart[a], sizeA, inSources, inStart[b], sizeB);
+        if (common == 0) {
+            return 0.0d;
+        }
+        double num = Math.log(Math.max(sizeA, sizeB)) - Math.log(common);
+        double den = Math.log(names.length) - Math.log(Math.min(sizeA, sizeB));
+        if (den <= 0) {
+            return 0.0d;
+        }
+        return Math.max(0.0d, Math.min(1.0d, 1.0d - num / den));
+    }
+
+    /**
+     * Jaccard similarity of the outlinks of two nodes: |A n B| / |A u B|.
+     * @param a Integer Node of the first entity.
+     * @param b Integer Node of the second entity.
+     * @return Double
+     */
+
+    public double jaccard(int a, int b) {
+        if (a == b) {
+            return 1.0d;
+        }
+        int sizeA = outLength[a], sizeB = outLength[b];
+        int common = intersect(outTargets, outStart[a], sizeA, outTargets, outStart[b], sizeB);
+        return common == 0 ? 0.0d : (double) common / (sizeA + sizeB - common);
+    }
+
+    /**
+     * Node of an entity.
+     * @param entity String Page index ID.
+     * @return Integer Node, or -1 if the entity is not a page in the index.
+     */
+
+    public int getNode(@NotNull String entity) {
+        return find(names, entity);
+    }
+
+    /**
+     * Number of pages in the graph.
+     * @return Integer
+     */
+
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Number of links in the graph.
+     * @return Integer
+     */
+
+    public int links() {
+        return outTargets.length;
+    }
+
+    /**
+     * Save the graph to a file.
+     * @param file String Path to the file.
+     * @throws IOException If the file could not be written.
+     */
+
+    public void save(@NotNull String file) throws IOException {
+        Path path = Paths.get(file);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path),
+                1 << 20))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(index);
+            out.writeInt(names.length);
+            out.writeInt(outTargets.length);
+            for (String name : names) {
+                out.writeUTF(name);
+            }
+            write(out, outStart);
+            write(out, outLength);
+            write(out, outTargets);
+            write(out, inStart);
+            write(out, inSources);
+        }
+    }
+
+    /**
+     * Load a graph saved with save().
+     * @param file String Path to the file.
+     * @return LinkGraph
+     * @throws IOException If the file could not be read or is not a saved graph.
+     */
+
+    @NotNull
+    public static LinkGraph load(@NotNull String file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(Paths.get(file)),
+                1 << 20))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a link graph file: " + file);
+            }
+            String index = in.readUTF();
+            int n = in.readInt(), links = in.readInt();
+            String[] names = new String[n];
+            for (int i = 0; i < n; i++) {
+                names[i] = in.readUTF();
+            }
+            int[] outStart = read(in, n);
+            int[] outLength = read(in, n);
+            int[] outTargets = read(in, links);
+            int[] inStart = read(in, n + 1);
+            int[] inSources = read(in, links);
+            return new LinkGraph(index, names, outStart, outLength, outTargets, inStart, inSources);
+        }
+    }
+
+    /**
+     * Identity of the page index a graph was saved from.
+     * @param file String Path to the file.
+     * @return String, or null if the file is not a saved graph of this version.
+     * @throws IOException If the file could not be read.
+     */
+
+    @Nullable
+    private static String readIndex(@NotNull String file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(Paths.get(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            return in.readUTF();
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static int find(@NotNull String[] names, @Nullable String entity) {
+        if (entity == null) {
+            return -1;
+        }
+        int pos = Arrays.binarySearch(names, entity);
+        return pos >= 0 ? pos : -1;
+    }
+
+    private static int unique(@NotNull int[] a, int length) {
+        int n = 0;
+        for (int i = 0; i < length; i++) {
+            if (n == 0 || a[i] != a[n - 1]) {
+                a[n++] = a[i];
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Size of the intersection of two sorted int ranges.
+     * A linear merge is used for ranges of similar size and a binary search of the larger range otherwise.
+     */
+
+    private static int intersect(int[] a, int startA, int sizeA, int[] b, int startB, int sizeB) {
+        if (sizeA > sizeB) {
+            return intersect(b, startB, sizeB, a, startA, sizeA);
+        }
+        int common = 0;
+        if (sizeA == 0) {
+            return 0;
+        }
+        if ((long) sizeA * 32 < sizeB) {
+            int from = startB, end = startB + sizeB;
+            for (int i = startA; i < startA + sizeA && from < end; i++) {
+                int pos = Arrays.binarySearch(b, from, end, a[i]);
+                if (pos >= 0) {
+                    common++;
+                    from = pos + 1;
+                } else {
+                    from = -pos - 1;
+                }
+            }
+            return common;
+        }
+        int i = startA, j = startB, endA = startA + sizeA, endB = startB + sizeB;
+        while (i < endA && j < endB) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                common++;
+                i++;
+                j++;
+            }
+        }
+        return common;
+    }
+
+    private static void write(@NotNull DataOutputStream out, @NotNull int[] a) throws IOException {
+        for (int x : a) {
+            out.writeInt(x);
+        }
+    }
+
+    @NotNull
+    private static int[] read(@NotNull DataInputStream in, int length) throws IOException {
+        int[] a = new int[length];
+        for (int i = 0; i < length; i++) {
+            a[i] = in.readInt();
+        }
+        return a;
+    }
+}
@@ -1,8 +1,12 @@
 package help;
+import lucene.Index;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.search.IndexSearcher;
 import org.jetbrains.annotations.Contract;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Class to represent a pseudo-document for an entity.
@@ -10,9 +14,15 @@ import java.util.ArrayList;
  * @version 02/25/2019
  */
 public class PseudoDocument {
+    /** Number of top paragraphs retrieved for an entity to make its pseudo-document (N). */
+    public static final int TOP_N = 100;
+
     private ArrayList<Document> documentList;
     private String entity;
     private ArrayList<String> entityList;
+    private List<String> paraIdList;
+    private IndexSearcher searcher;
+    private EntityDistribution entityDistribution;
 
     /**
      * Construcor.
@@ -27,14 +37,59 @@ public class PseudoDocument {
         this.entityList = entityList;
     }
 
+    /**
+     * Constructor for a pseudo-document whose documents are loaded from the index when first asked for
+     * (e.g., one read from a PseudoDocumentStore).
+     * @param paraIdList List of the IDs of the paragraphs in the pseudo-document
+     * @param entity The entity for which the pseudo-document is made
+     * @param entityList The list of entities in the pseudo-document
+     * @param searcher The searcher of the paragraph index
+     */
+    @Contract(pure = true)
+    public PseudoDocument(List<String> paraIdList, String entity, ArrayList<String> entityList, IndexSearcher searcher) {
+        this.paraIdList = paraIdList;
+        this.entity = entity;
+        this.entityList = entityList;
+        this.searcher = searcher;
+    }
+
     /**
      * Method to get the list of documents in the pseudo-document.
      * @return String
      */
-    public ArrayList<Document> getDocumentList() {
+    public synchronized ArrayList<Document> getDocumentList() {
+        if (this.documentList == null) {
+            ArrayList<Document> documents = new ArrayList<>(paraIdList.size());
+            try {
+                int[] docIds = Index.Search.searchDocIds(Index.ID_FIELD, paraIdList, searcher);
+                for (Document doc : Index.Search.getDocuments(docIds, null, searcher)) {
+                    if (doc != null) {
+                        documents.add(doc);
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            this.documentList = documents;
+        }
         return this.documentList;
     }
 
+    /**
+     * Method to get the IDs of the paragraphs in the pseudo-document.
+     * @return List
+     */
+    public List<String> getParaIdList() {
+        if (this.paraIdList == null) {
+            List<String> ids = new ArrayList<>(documentList.size());
+            for (Document d : documentList) {
+                ids.add(d.get(Index.ID_FIELD));
+            }
+            this.paraIdList = ids;
+        }
+        return this.paraIdList;
+    }
+
     /**
      * Method to get the entity of the pseudo-document.
      * @return String
@@ -51,6 +106,18 @@ public class PseudoDocument {
         return this.entityList;
     }
 
+    /**
+     * Method to get the frequency distribution of the entities in the pseudo-document.
+     * It is computed the first time it is asked for, in one pass over the entity list.
+     * @return EntityDistribution
+     */
+    public synchronized EntityDistribution getEntityDistribution() {
+        if (this.entityDistribution == null) {
+            this.entityDistribution = EntityDistribution.of(this.entityList);
+        }
+        return this.entityDistribution;
+    }
+
     /**
      * Method to check if the entity passed as parameter is what this pseudo-document is about.
      * @param entity The entity to check
@@ -68,7 +135,7 @@ public class PseudoDocument {
      */
 
     public boolean containsDocument(Document document) {
-        for (Document d : this.documentList) {
+        for (Document d : getDocumentList()) {
             if (d.getField("id").stringValue().equalsIgnoreCase(document.getField("id").toString())) {
                 return true;
             }
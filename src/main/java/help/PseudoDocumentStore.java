@@ -0,0 +1,490 @@
+package help;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.FilterDirectory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ====================================================================================================================
+ * A read-only store of precomputed pseudo-documents, keyed by entity.
+ * A pseudo-document is stored as the IDs of its paragraphs and the frequency vector of the entities in them, which is
+ * all the experiments use; the paragraphs themselves are loaded from the index only if asked for.
+ * File layout:
+ * (1) Header: magic, version, and the parameters the pseudo-documents were built with (see parameters()).
+ * (2) One record per entity: [int length][paragraph IDs][entity vector as (entity number, count) varint pairs].
+ *     An entity without a pseudo-document has an empty record, so that it is not built again at run time.
+ * (3) Footer: the entity names used by the vectors, then the (entity, record offset) index, then the offsets of
+ *     both and the magic again.
+ * The footer is read into memory when the store is opened; a lookup is then one hash lookup and one read.
+ * The store is written by the offline stage random.BuildPseudoDocuments and used by the experiments when
+ * "-Dpseudo.doc.store=FILE" is given. An experiment only uses the store if it was built with the same index, analyzer,
+ * similarity and number of paragraphs as the experiment runs with; otherwise it warns and builds the pseudo-documents
+ * itself.
+ * ====================================================================================================================
+ * @author Shubham Chatterjee
+ * @version 10/17/2026
+ */
+
+public class PseudoDocumentStore {
+
+    private static final int MAGIC = 0x50444F43; // "PDOC"
+    private static final int VERSION = 2;
+    private static final int TRAILER_SIZE = 20;  // dictionary offset, index offset, magic
+
+    private static volatile PseudoDocumentStore store = open(System.getProperty("pseudo.doc.store"));
+
+    private final String file;
+    private final FileChannel channel;
+    private final Map<String, String> parameters;
+    private final String[] names;
+    private final Map<String, Long> offsets;
+    private final Map<Map<String, String>, Boolean> checked = new ConcurrentHashMap<>();
+
+    private PseudoDocumentStore(String file,
+                                FileChannel channel,
+                                Map<String, String> parameters,
+                                String[] names,
+                                Map<String, Long> offsets) {
+        this.file = file;
+        this.channel = channel;
+        this.parameters = parameters;
+        this.names = names;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Open a store file.
+     * @param file String Path to the file.
+     * @return PseudoDocumentStore
+     * @throws IOException If the file could not be read or is not a pseudo-document store.
+     */
+
+    @NotNull
+    public static PseudoDocumentStore load(@NotNull String file) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < 8 + TRAILER_SIZE) {
+                throw new IOException("Not a pseudo-document store: " + file);
+            }
+            ByteBuffer header = read(channel, 0, 12);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a pseudo-document store: " + file);
+            }
+            if (header.getInt() != VERSION) {
+                throw new IOException("Old pseudo-document store (rebuild it with random.BuildPseudoDocuments): " +
+                        file);
+            }
+            int parametersLength = header.getInt();
+            ByteBuffer trailer = read(channel, size - TRAILER_SIZE, TRAILER_SIZE);
+            long dictionaryOffset = trailer.getLong();
+            long indexOffset = trailer.getLong();
+            if (trailer.getInt() != MAGIC || parametersLength < 0 || dictionaryOffset < 12L + parametersLength
+                    || indexOffset < dictionaryOffset || indexOffset > size - TRAILER_SIZE) {
+                throw new IOException("Not a pseudo-document store: " + file);
+            }
+            DataInputStream parametersIn = new DataInputStream(new ByteArrayInputStream(
+                    read(channel, 12, parametersLength).array()));
+            Map<String, String> parameters = new TreeMap<>();
+            for (int i = parametersIn.readInt(); i > 0; i--) {
+                parameters.put(parametersIn.readUTF(), parametersIn.readUTF());
+            }
+            ByteBuffer footer = read(channel, dictionaryOffset, (int) (size - TRAILER_SIZE - dictionaryOffset));
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(footer.array()));
+            String[] names = new String[in.readInt()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = in.readUTF();
+            }
+            int numEntities = in.readInt();
+            Map<String, Long> offsets = new HashMap<>(numEntities * 4 / 3 + 1);
+            for (int i = 0; i < numEntities; i++) {
+                offsets.put(in.readUTF(), in.readLong());
+            }
+            return new PseudoDocumentStore(file, channel, parameters, names, offsets);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Open the store given by "-Dpseudo.doc.store=FILE".
+     * @param file String Path to the file. If null or empty, there is no store.
+     * @return PseudoDocumentStore, or null if there is no store or it could not be read.
+     */
+
+    @Nullable
+    private static PseudoDocumentStore open(@Nullable String file) {
+        if (file == null || file.isEmpty()) {
+            return null;
+        }
+        try {
+            PseudoDocumentStore pseudoDocumentStore = load(file);
+            System.out.println("Loaded " + pseudoDocumentStore.size() + " pseudo-documents from " + file);
+            return pseudoDocumentStore;
+        } catch (IOException e) {
+            System.err.println("ERROR in PseudoDocumentStore.open(): " + e.getClass().getCanonicalName());
+            return null;
+        }
+    }
+
+    /**
+     * Get the store used by the experiments, whatever it was built with.
+     * @return PseudoDocumentStore, or null if there is none.
+     */
+
+    @Nullable
+    public static PseudoDocumentStore getStore() {
+        return store;
+    }
+
+    /**
+     * Get the store used by the experiments if it was built with the given setup.
+     * @param searcher IndexSearcher Searcher of the paragraph index (with the similarity used to rank the paragraphs).
+     * @param analyzer Analyzer Analyzer of the entity queries.
+     * @param n Integer Number of paragraphs retrieved per entity.
+     * @return PseudoDocumentStore, or null if there is none or it was built with another setup (a warning is printed
+     * the first time).
+     */
+
+    @Nullable
+    public static PseudoDocumentStore getStore(@NotNull IndexSearcher searcher, @NotNull Analyzer analyzer, int n) {
+        PseudoDocumentStore pseudoDocumentStore = store;
+        return pseudoDocumentStore != null && pseudoDocumentStore.matches(parameters(searcher, analyzer, n))
+                ? pseudoDocumentStore
+                : null;
+    }
+
+    /**
+     * Describe the setup the pseudo-documents are built with: the paragraph index (directory and version), the
+     * analyzer, the similarity, the number of paragraphs per entity and "-Dpseudo.doc.source".
+     * @param searcher IndexSearcher Searcher of the paragraph index.
+     * @param analyzer Analyzer Analyzer of the entity queries.
+     * @param n Integer Number of paragraphs retrieved per entity.
+     * @return Map of (parameter, value), sorted by parameter.
+     */
+
+    @NotNull
+    public static Map<String, String> parameters(@NotNull IndexSearcher searcher, @NotNull Analyzer analyzer, int n) {
+        Map<String, String> parameters = new TreeMap<>();
+        IndexReader reader = searcher.getIndexReader();
+        if (reader instanceof DirectoryReader) {
+            Directory directory = FilterDirectory.unwrap(((DirectoryReader) reader).directory());
+            parameters.put("index", directory instanceof FSDirectory
+                    ? ((FSDirectory) directory).getDirectory().toAbsolutePath().normalize().toString()
+                    : directory.toString());
+            parameters.put("index.version", Long.toString(((DirectoryReader) reader).getVersion()));
+        }
+        parameters.put("analyzer", analyzer.getClass().getName());
+        parameters.put("similarity", searcher.getSimilarity(true).toString());
+        parameters.put("n", Integer.toString(n));
+        parameters.put("source", System.getProperty("pseudo.doc.source", "query"));
+        return parameters;
+    }
+
+    /**
+     * Parameters the pseudo-documents of the store were built with (see parameters()).
+     * @return Map
+     */
+
+    @NotNull
+    public Map<String, String> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Whether the store was built with the given parameters. The first mismatch with a setup is reported.
+     * @param running Map Parameters of the running setup (see parameters()).
+     * @return Boolean
+     */
+
+    public boolean matches(@NotNull Map<String, String> running) {
+        return checked.computeIfAbsent(running, p -> {
+            if (p.equals(parameters)) {
+                return true;
+            }
+            Map<String, String> differences = new TreeMap<>();
+            for (String key : p.keySet()) {
+                if (!p.get(key).equals(parameters.get(key))) {
+                    differences.put(key, parameters.get(key) + " -> " + p.get(key));
+                }
+            }
+            for (String key : parameters.keySet()) {
+                if (!p.containsKey(key)) {
+                    differences.put(key, parameters.get(key) + " -> (none)");
+                }
+            }
+            System.err.println("WARNING: Pseudo-document store " + file + " was built with another setup " +
+                    differences + ". The store is not used.");
+            return false;
+        });
+    }
+
+    /**
+     * Set the store used by the experiments.
+     * @param pseudoDocumentStore PseudoDocumentStore (null for none).
+     */
+
+    public static void setStore(@Nullable PseudoDocumentStore pseudoDocumentStore) {
+        store = pseudoDocumentStore;
+    }
+
+    /**
+     * Whether the store has a record for an entity (possibly one saying it has no pseudo-document).
+     * @param entity String Entity, as passed to Utilities.createPseudoDocument().
+     * @return Boolean
+     */
+
+    public boolean contains(@NotNull String entity) {
+        return offsets.containsKey(entity);
+    }
+
+    /**
+     * Number of entities in the store.
+     * @return Integer
+     */
+
+    public int size() {
+        return offsets.size();
+    }
+
+    /**
+     * Get the pseudo-document of an entity.
+     * @param entity String Entity, as passed to Utilities.createPseudoDocument().
+     * @param searcher IndexSearcher Searcher of the paragraph index (to load the paragraphs, if asked for).
+     * @return PseudoDocument, or null if the entity has none or is not in the store.
+     */
+
+    @Nullable
+    public PseudoDocument get(@NotNull String entity, IndexSearcher searcher) {
+        Long offset = offsets.get(entity);
+        if (offset == null) {
+            return null;
+        }
+        try {
+            int length = read(channel, offset, 4).getInt();
+            if (length == 0) {
+                return null;
+            }
+            ByteBuffer record = read(channel, offset + 4, length);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(record.array()));
+            int numParas = readVarInt(in);
+            List<String> paraIdList = new ArrayList<>(numParas);
+            for (int i = 0; i < numParas; i++) {
+                paraIdList.add(in.readUTF());
+            }
+            ArrayList<String> entityList = new ArrayList<>();
+            int numEntities = readVarInt(in);
+            for (int i = 0; i < numEntities; i++) {
+                String name = names[readVarInt(in)];
+                for (int c = readVarInt(in); c > 0; c--) {
+                    entityList.add(name);
+                }
+            }
+            return new PseudoDocument(paraIdList, entity, entityList, searcher);
+        } catch (IOException e) {
+            System.err.println("ERROR in PseudoDocumentStore.get(): " + e.getClass().getCanonicalName());
+            return null;
+        }
+    }
+
+    /**
+     * Close the store file.
+     */
+
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("ERROR in PseudoDocumentStore.close(): " + e.getClass().getCanonicalName());
+        }
+    }
+
+    @NotNull
+    private static ByteBuffer read(@NotNull FileChannel channel, long pos, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, pos + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int readVarInt(@NotNull DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if (b < 0x80) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static void writeVarInt(@NotNull DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Writer of a store file. Thread-safe.
+     * The file is written to a temporary file first and moved in place by close(), so readers never see a partial
+     * store.
+     */
+
+    public static class Writer {
+        private final Path path;
+        private final Path tmp;
+        private final DataOutputStream out;
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, Long> offsets = new HashMap<>();
+        private long position;
+
+        /**
+         * Constructor.
+         * @param file String Path to the file.
+         * @param parameters Map Parameters the pseudo-documents are built with (see parameters()).
+         * @throws IOException If the file could not be created.
+         */
+
+        public Writer(@NotNull String file, @NotNull Map<String, String> parameters) throws IOException {
+            path = Paths.get(file);
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 20));
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream parametersOut = new DataOutputStream(bytes);
+            parametersOut.writeInt(parameters.size());
+            for (Map.Entry<String, String> entry : parameters.entrySet()) {
+                parametersOut.writeUTF(entry.getKey());
+                parametersOut.writeUTF(entry.getValue());
+            }
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+            position = 12 + bytes.size();
+        }
+
+        /**
+         * Add the pseudo-document of an entity.
+         * @param entity String Entity, as passed to Utilities.createPseudoDocument().
+         * @param pseudoDocument PseudoDocument The pseudo-document, or null if the entity has none.
+         * @throws IOException If the record could not be written.
+         */
+
+        public synchronized void add(@NotNull String entity, @Nullable PseudoDocument pseudoDocument)
+                throws IOException {
+            if (offsets.containsKey(entity)) {
+                return;
+            }
+            offsets.put(entity, position);
+            if (pseudoDocument == null) {
+                out.writeInt(0);
+                position += 4;
+                return;
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream record = new DataOutputStream(bytes);
+            List<String> paraIdList = pseudoDocument.getParaIdList();
+            writeVarInt(record, paraIdList.size());
+            for (String paraId : paraIdList) {
+                record.writeUTF(paraId);
+            }
+            Map<Integer, Integer> counts = new HashMap<>();
+            for (String e : pseudoDocument.getEntityList()) {
+                counts.merge(number(e), 1, Integer::sum);
+            }
+            writeVarInt(record, counts.size());
+            for (Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+                writeVarInt(record, entry.getKey());
+                writeVarInt(record, entry.getValue());
+            }
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+            position += 4 + bytes.size();
+        }
+
+        /**
+         * Number of entities added.
+         * @return Integer
+         */
+
+        public synchronized int size() {
+            return offsets.size();
+        }
+
+        /**
+         * Write the footer and move the file in place.
+         * @throws IOException If the file could not be written.
+         */
+
+        public synchronized void close() throws IOException {
+            long dictionaryOffset = position;
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream dictionaryOut = new DataOutputStream(bytes);
+            dictionaryOut.writeInt(names.size());
+            for (String name : names) {
+                dictionaryOut.writeUTF(name);
+            }
+            bytes.writeTo(out);
+            long indexOffset = dictionaryOffset + bytes.size();
+            out.writeInt(offsets.size());
+            for (Map.Entry<String, Long> entry : offsets.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+            out.writeLong(dictionaryOffset);
+            out.writeLong(indexOffset);
+            out.writeInt(MAGIC);
+            out.close();
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private int number(@NotNull String name) {
+            Integer n = dictionary.get(name);
+            if (n == null) {
+                n = names.size();
+                dictionary.put(name, n);
+                names.add(name);
+            }
+            return n;
+        }
+    }
+}
@@ -2,12 +2,17 @@ package help;
 
 import json.Aspect;
 import lucene.Index;
+import lucene.QueryTerms;
+import lucene.ResultCache;
+import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TopDocs;
 import org.jetbrains.annotations.Contract;
@@ -24,6 +29,8 @@ import java.util.stream.Collectors;
  * @version 03/01/2019
  */
 public class Utilities {
+    private static final Set<String> ID_ONLY = Collections.singleton(Index.ID_FIELD);
+
     /**
      * Method to get rankings from the paragraph run file and entity run file.
      * @param inFilePath Path to file from which rankings must be taken
@@ -244,33 +251,52 @@ public class Utilities {
     public static PseudoDocument createPseudoDocument(String entity, @NotNull ArrayList<String> paraList, IndexSearcher searcher) {
         ArrayList<Document> documentList = new ArrayList<>();
         ArrayList<String> pseudoDocEntityList = new ArrayList<>();
-        // Get the list of paragraphs relevant for the query
-        // For every paragraph in the list of paragraphs relevant for the query do
-        for (String paraId : paraList) {
-            try {
-                // Get the document corresponding to the paragraph from the lucene index
-                Document doc = Index.Search.searchIndex("id", paraId, searcher);
-                // Get the entities in the paragraph
-                assert doc != null;
-                String[] entityList = Utilities.clean(doc.getField("entity").stringValue().split(" "));
-                // Make an ArrayList from the String array
-                ArrayList<String> pEntList = new ArrayList<>(Arrays.asList(entityList));
-                // If the document does not have any entities then ignore
-                if (pEntList.isEmpty()) {
-                    continue;
+        String processed = Utilities.process(entity);
+        try {
+            // Find all the paragraphs in the index at once
+            int[] docIds = Index.Search.searchDocIds(Index.ID_FIELD, paraList, searcher);
+            // If the index has the entities as doc values, check the paragraphs for the entity without loading them
+            if (Index.Search.hasEntityDocValues(searcher)) {
+                int[] keep = new int[docIds.length];
+                int n = 0;
+                for (int docId : docIds) {
+                    if (docId < 0) {
+                        continue;
+                    }
+                    // Entities of the paragraph, or null if the entity is not among them
+                    ArrayList<String> pEntList = Index.Search.getEntities(docId, processed, searcher);
+                    if (pEntList != null) {
+                        keep[n++] = docId;
+                        pseudoDocEntityList.addAll(pEntList);
+                    }
                 }
-                // If the entity is present in the paragraph
-                if (pEntList.contains(Utilities.process(entity))) {
-                    // Add it to the pseudo document
-                    documentList.add(doc);
-                    // Add all the entities to the pseudo document entity list
-                    pseudoDocEntityList.addAll(pEntList);
+                documentList.addAll(Arrays.asList(Index.Search.getDocuments(Arrays.copyOf(keep, n), null, searcher)));
+            } else {
+                // Get the entities of the paragraphs (only the entity field is loaded)
+                Document[] entityDocs = Index.Search.getDocuments(docIds,
+                        Collections.singleton(Index.ENTITY_STRING_FIELD), searcher);
+                int[] keep = new int[docIds.length];
+                int n = 0;
+                for (int i = 0; i < docIds.length; i++) {
+                    String entities = entityDocs[i] != null ? entityDocs[i].get(Index.ENTITY_STRING_FIELD) : null;
+                    if (entities == null) {
+                        continue;
+                    }
+                    String[] entityList = Utilities.clean(entities.split(" "));
+                    // Make an ArrayList from the String array
+                    ArrayList<String> pEntList = new ArrayList<>(Arrays.asList(entityList));
+                    // If the entity is present in the paragraph
+                    if (pEntList.contains(processed)) {
+                        keep[n++] = docIds[i];
+                        // Add all the entities to the pseudo document entity list
+                        pseudoDocEntityList.addAll(pEntList);
+                    }
                 }
-
-            } catch (IOException | ParseException e) {
-                e.printStackTrace();
+                // Load the paragraphs in the pseudo-document
+                documentList.addAll(Arrays.asList(Index.Search.getDocuments(Arrays.copyOf(keep, n), null, searcher)));
             }
-
+        } catch (IOException e) {
+            e.printStackTrace();
         }
 
         // If there are no documents in the pseudo-document
@@ -280,6 +306,125 @@ public class Utilities {
         return new PseudoDocument(documentList, entity, pseudoDocEntityList);
     }
 
+    /**
+     * Method to create a pseudo-document for an entity from the entity postings of the index (see Index.ENTITY_FIELD).
+     * The pseudo-document has the paragraphs among the top-N hits of the query that link to the entity, in rank order.
+     * This is the same pseudo-document as createPseudoDocument(String, ArrayList, IndexSearcher) makes from the top-N
+     * paragraph ids, but the paragraphs that do not link to the entity are rejected by one walk over its postings,
+     * without loading them.
+     * With "-Dpseudo.doc.source=postings" (or a null query), the query is ignored and the pseudo-document has the
+     * first N paragraphs that link to the entity.
+     * @param entity The entity
+     * @param query The query for the entity (e.g., its name)
+     * @param n Number of hits (or paragraphs)
+     * @param searcher The searcher of the paragraph index
+     * @return PseudoDocument, or null if no paragraph qualifies
+     */
+    @Nullable
+    public static PseudoDocument createPseudoDocument(String entity, @Nullable Query query, int n, IndexSearcher searcher) {
+        String processed = Utilities.process(entity);
+        ArrayList<Document> documentList = new ArrayList<>();
+        ArrayList<String> pseudoDocEntityList = new ArrayList<>();
+        try {
+            int[] docIds;
+            if (query == null || "postings".equals(System.getProperty("pseudo.doc.source"))) {
+                docIds = Index.Search.searchEntityPostings(processed, null, n, searcher);
+            } else {
+                ScoreDoc[] hits = ResultCache.getInstance().search(searcher, query, n).scoreDocs;
+                int[] sorted = new int[hits.length];
+                for (int i = 0; i < hits.length; i++) {
+                    sorted[i] = hits[i].doc;
+                }
+                Arrays.sort(sorted);
+                int[] linking = Index.Search.searchEntityPostings(processed, sorted, n, searcher);
+                // Back to rank order
+                docIds = new int[linking.length];
+                int m = 0;
+                for (ScoreDoc hit : hits) {
+                    if (Arrays.binarySearch(linking, hit.doc) >= 0) {
+                        docIds[m++] = hit.doc;
+                    }
+                }
+            }
+            boolean docValues = Index.Search.hasEntityDocValues(searcher);
+            for (int docId : docIds) {
+                Document doc = searcher.doc(docId);
+                documentList.add(doc);
+                if (docValues) {
+                    ArrayList<String> pEntList = Index.Search.getEntities(docId, null, searcher);
+                    if (pEntList != null) {
+                        pseudoDocEntityList.addAll(pEntList);
+                    }
+                } else {
+                    String entities = doc.get(Index.ENTITY_STRING_FIELD);
+                    if (entities != null) {
+                        pseudoDocEntityList.addAll(Arrays.asList(Utilities.clean(entities.split(" "))));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return documentList.isEmpty() ? null : new PseudoDocument(documentList, entity, pseudoDocEntityList);
+    }
+
+    /**
+     * Method to create the pseudo-document of an entity from the top-N paragraphs retrieved with the entity name as
+     * query. This is how every experiment (and the offline builders in "random") makes a pseudo-document.
+     * If "-Dpseudo.doc.store" holds a store built with the same setup (see PseudoDocumentStore.getStore()), the
+     * pseudo-document is read from it instead.
+     * If the index has entity postings, the paragraphs that link to the entity are found from the postings (see
+     * createPseudoDocument(String, Query, int, IndexSearcher)); otherwise from the entities stored with the top-N
+     * paragraphs (see createPseudoDocument(String, ArrayList, IndexSearcher)).
+     * @param entity The entity
+     * @param n Number of paragraphs retrieved for the entity (see PseudoDocument.TOP_N)
+     * @param analyzer The analyzer of the entity query
+     * @param searcher The searcher of the paragraph index
+     * @return PseudoDocument, or null if no paragraph qualifies
+     */
+    @Nullable
+    public static PseudoDocument createPseudoDocument(String entity, int n, Analyzer analyzer, IndexSearcher searcher) {
+        // Use the precomputed pseudo-document, if there is one built with this setup (see random.BuildPseudoDocuments)
+        PseudoDocumentStore store = PseudoDocumentStore.getStore(searcher, analyzer, n);
+        if (store != null && store.contains(entity)) {
+            return store.get(entity, searcher);
+        }
+        BooleanQuery booleanQuery;
+        try {
+            booleanQuery = QueryTerms.toQuery(entity.replaceAll("_", " ").toLowerCase(), Index.TEXT_FIELD, analyzer);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        if (Index.Search.hasEntityPostings(searcher)) {
+            return createPseudoDocument(entity, booleanQuery, n, searcher);
+        }
+        return createPseudoDocument(entity, getTopDocs(booleanQuery, n, searcher), searcher);
+    }
+
+    /**
+     * Searches the paragraph index for a query and returns the IDs of the top-K paragraphs.
+     * The hits are kept in the ResultCache, since the same entity is queried again for every mention it is a context
+     * entity of.
+     * @param booleanQuery BooleanQuery
+     * @param topKDocs Integer
+     * @param searcher IndexSearcher
+     * @return List
+     */
+    @NotNull
+    private static ArrayList<String> getTopDocs(BooleanQuery booleanQuery, int topKDocs, IndexSearcher searcher) {
+        ArrayList<String> searchResults = new ArrayList<>();
+        try {
+            TopDocs topDocs = ResultCache.getInstance().search(searcher, booleanQuery, topKDocs);
+            for (ScoreDoc retDoc : topDocs.scoreDocs) {
+                searchResults.add(searcher.doc(retDoc.doc, ID_ONLY).get(Index.ID_FIELD));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return searchResults;
+    }
+
     /**
      * Find the intersection of two lists.
      * @param list1 The first list
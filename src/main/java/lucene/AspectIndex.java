@@ -0,0 +1,219 @@
+package lucene;
+
+import help.Utilities;
+import json.Aspect;
+import json.JsonObject;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.jetbrains.annotations.NotNull;
+import org.json.simple.JSONObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ====================================================================================================================
+ * A persistent index of every distinct candidate aspect of the dataset, shared by all mentions.
+ * Candidate aspects recur across mentions. Instead of indexing the candidates of every mention on their own
+ * (RAMIndex, AspectScorer), each aspect is indexed once, keyed by its ID, and the candidates of a mention are ranked
+ * with the query of the mention restricted to their IDs (a filter, which does not change the scores).
+ * The documents, analyzer and similarity are the same as those of the per-mention index (Utilities.toLuceneDoc(Aspect),
+ * EnglishAnalyzer, BM25), but the BM25 statistics (idf, average length) are those of all the aspects of the dataset
+ * instead of those of the candidates of the mention, so the scores (and possibly the rankings) differ.
+ * Use "-Daspect.index=DIR" with Experiment-6 and 7 to use it. The index is built the first time; later runs only add
+ * the aspects that are not in it yet. Each aspect is stored with a hash of its text, so an aspect whose text changed
+ * in a newer dataset is re-indexed (replacing the old text) instead of being scored with the old text.
+ * ====================================================================================================================
+ * @author Shubham Chatterjee
+ * @version 10/17/2026
+ */
+
+public class AspectIndex implements Closeable {
+
+    private static final String ID_FIELD = "id";
+    private static final String TEXT_FIELD = "text";
+    private static final String HASH_FIELD = "hash";
+    private static final Set<String> ID_ONLY = Collections.singleton(ID_FIELD);
+    private static final Set<String> HASH_ONLY = Collections.singleton(HASH_FIELD);
+
+    private final IndexHandle handle;
+
+    private AspectIndex(IndexHandle handle) {
+        this.handle = handle;
+    }
+
+    /**
+     * Open the aspect index, adding the candidate aspects of the dataset that are not in it yet and re-indexing those
+     * whose text changed since they were indexed.
+     * @param indexDir String Path to the index directory (created if it does not exist).
+     * @param jsonObjectList List JSON objects of the dataset.
+     * @return AspectIndex
+     * @throws IOException If the index could not be written or opened.
+     */
+
+    @NotNull
+    public static AspectIndex open(@NotNull String indexDir, @NotNull List<JSONObject> jsonObjectList)
+            throws IOException {
+        Map<String, Aspect> aspects = new LinkedHashMap<>();
+        for (JSONObject jsonObject : jsonObjectList) {
+            for (Aspect aspect : JsonObject.getAspectCandidates(jsonObject)) {
+                aspects.putIfAbsent(aspect.getId(), aspect);
+            }
+        }
+
+        try (Directory dir = FSDirectory.open(Paths.get(indexDir))) {
+            List<String> ids = new ArrayList<>(aspects.keySet());
+            List<String> stale = new ArrayList<>();
+            int missing = ids.size();
+            if (DirectoryReader.indexExists(dir)) {
+                missing = 0;
+                try (DirectoryReader reader = DirectoryReader.open(dir)) {
+                    int[] docIds = Index.Search.searchDocIds(ID_FIELD, ids, new IndexSearcher(reader));
+                    for (int i = 0; i < docIds.length; i++) {
+                        if (docIds[i] == -1) {
+                            stale.add(ids.get(i));
+                            missing++;
+                        } else if (!hash(aspects.get(ids.get(i)))
+                                .equals(reader.document(docIds[i], HASH_ONLY).get(HASH_FIELD))) {
+                            stale.add(ids.get(i));
+                        }
+                    }
+                }
+            } else {
+                stale = ids;
+            }
+            if (!stale.isEmpty()) {
+                System.out.println("Adding " + missing + " and updating " + (stale.size() - missing) +
+                        " aspects in " + indexDir);
+                IndexWriterConfig config = new IndexWriterConfig(new EnglishAnalyzer());
+                config.setSimilarity(new BM25Similarity());
+                config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+                try (IndexWriter writer = new IndexWriter(dir, config)) {
+                    for (String id : stale) {
+                        Aspect aspect = aspects.get(id);
+                        Document doc = Utilities.toLuceneDoc(aspect);
+                        doc.add(new StringField(HASH_FIELD, hash(aspect), Field.Store.YES));
+                        writer.updateDocument(new Term(ID_FIELD, id), doc);
+                    }
+                    writer.commit();
+                }
+            }
+        }
+        return new AspectIndex(new IndexHandle(indexDir, TEXT_FIELD, new EnglishAnalyzer(), new BM25Similarity()));
+    }
+
+    /**
+     * Hash of the text of an aspect, stored with it to find aspects whose text changed since they were indexed.
+     * @param aspect Aspect
+     * @return String Hex SHA-256 of the content of the aspect.
+     */
+
+    @NotNull
+    private static String hash(@NotNull Aspect aspect) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(aspect.getContent().getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Number of aspects in the index.
+     * @return Integer
+     */
+
+    public int size() {
+        try {
+            IndexSearcher searcher = handle.acquire();
+            try {
+                return searcher.getIndexReader().numDocs();
+            } finally {
+                handle.release(searcher);
+            }
+        } catch (IOException e) {
+            System.err.println("ERROR in AspectIndex.size(): " + e.getClass().getCanonicalName());
+            return 0;
+        }
+    }
+
+    /**
+     * Rank the candidate aspects of a mention. Thread-safe.
+     * @param query BooleanQuery Query of the mention (e.g., built by EntityRMExpand).
+     * @param candidateAspects List Candidate aspects of the mention.
+     * @param n Integer Number of top hits.
+     * @return Map where Key = aspect ID and Value = score (as RAMIndex.searchIndex()).
+     */
+
+    @NotNull
+    public Map<String, Double> search(@NotNull BooleanQuery query, @NotNull List<Aspect> candidateAspects, int n) {
+        Map<String, Double> results = new HashMap<>();
+        if (candidateAspects.isEmpty() || n <= 0) {
+            return results;
+        }
+        List<BytesRef> ids = new ArrayList<>(candidateAspects.size());
+        for (Aspect aspect : candidateAspects) {
+            ids.add(new BytesRef(aspect.getId()));
+        }
+        BooleanQuery filteredQuery = new BooleanQuery.Builder()
+                .add(query, BooleanClause.Occur.MUST)
+                .add(new TermInSetQuery(ID_FIELD, ids), BooleanClause.Occur.FILTER)
+                .build();
+        try {
+            IndexSearcher searcher = handle.acquire();
+            try {
+                TopDocs tds = searcher.search(filteredQuery, n);
+                for (ScoreDoc scoreDoc : tds.scoreDocs) {
+                    results.put(searcher.doc(scoreDoc.doc, ID_ONLY).get(ID_FIELD), (double) scoreDoc.score);
+                }
+            } finally {
+                handle.release(searcher);
+            }
+        } catch (IOException e) {
+            System.err.println("ERROR in AspectIndex.search(): " + e.getClass().getCanonicalName());
+        }
+        return results;
+    }
+
+    /**
+     * Close the index.
+     * @throws IOException If the index could not be closed.
+     */
+
+    @Override
+    public void close() throws IOException {
+        handle.close();
+    }
+}
@@ -0,0 +1,346 @@
+package lucene;
+
+import json.Aspect;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.util.SmallFloat;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ====================================================================================================================
+ * BM25 scorer for a small collection of candidate aspects, kept in memory.
+ * Replaces the per-mention RAMDirectory index (RAMIndex): instead of an IndexWriter, a commit, a DirectoryReader and
+ * an IndexSearcher for a few dozen aspects, the aspects are tokenized once into a term dictionary and postings held
+ * in primitive arrays, and a query is scored directly from them.
+ * The scores are those of Lucene 7.7.0 BM25Similarity on the same documents (Utilities.toLuceneDoc(Aspect)):
+ * (1) document lengths are quantized like Lucene norms (SmallFloat.intToByte4),
+ * (2) idf = log(1 + (docCount - docFreq + 0.5) / (docFreq + 0.5)), avgdl = sumTotalTermFreq / docCount,
+ * (3) score = boost * idf * (k1 + 1) * tf / (tf + k1 * (1 - b + b * length / avgdl)), summed over the clauses,
+ * (4) duplicate SHOULD clauses are merged by summing their boosts, as BooleanQuery.rewrite() does.
+ * An instance is NOT thread-safe, but it can be reused: keep one per thread (e.g., in a ThreadLocal) and call
+ * index() for every mention. The arrays grow to the largest collection seen and are then reused.
+ * ====================================================================================================================
+ * @author Shubham Chatterjee
+ * @version 10/17/2026
+ */
+
+public class AspectScorer {
+
+    private final Analyzer analyzer;
+    private final String field;
+    private final float k1;
+    private final float b;
+
+    // Term dictionary: the characters of term i are chars[termStart[i], termStart[i] + termLength[i])
+    private char[] chars = new char[4096];
+    private int numChars;
+    private int[] termStart = new int[256];
+    private int[] termLength = new int[256];
+    private int numTerms;
+    private int[] table = new int[512]; // open addressing: termId + 1, 0 if empty
+
+    // Documents
+    private String[] ids = new String[64];
+    private int[] lengths = new int[64];
+    private int numDocs;
+    private int docCount;
+    private long sumTotalTermFreq;
+
+    // Postings, appended document by document, then grouped by term (docs stay in increasing order)
+    private int[] postingTerm = new int[1024];
+    private int[] postingDoc = new int[1024];
+    private int[] postingFreq = new int[1024];
+    private int numPostings;
+    private int[] postingStart = new int[257];
+    private int[] docs = new int[1024];
+    private int[] freqs = new int[1024];
+
+    // Scratch
+    private int[] freqInDoc = new int[256];
+    private int[] touched = new int[256];
+    private float[] scores = new float[64];
+    private boolean[] matched = new boolean[64];
+
+    /**
+     * Constructor.
+     * @param analyzer Analyzer Analyzer used to tokenize the aspects (the one the aspect index was built with).
+     * @param field String Field of the aspect text; query clauses on other fields match nothing.
+     * @param similarity BM25Similarity Similarity (for k1 and b).
+     */
+
+    public AspectScorer(@NotNull Analyzer analyzer, @NotNull String field, @NotNull BM25Similarity similarity) {
+        this.analyzer = analyzer;
+        this.field = field;
+        this.k1 = similarity.getK1();
+        this.b = similarity.getB();
+    }
+
+    /**
+     * Index the candidate aspects of a mention, replacing the previous ones.
+     * @param aspects List Candidate aspects.
+     * @throws IOException If an aspect could not be tokenized.
+     */
+
+    public void index(@NotNull List<Aspect> aspects) throws IOException {
+        numChars = numTerms = numDocs = docCount = numPostings = 0;
+        sumTotalTermFreq = 0;
+        Arrays.fill(table, 0);
+        ensureDocs(aspects.size());
+        for (Aspect aspect : aspects) {
+            addDocument(aspect.getId(), aspect.getContent());
+        }
+        groupPostings();
+    }
+
+    /**
+     * Number of aspects indexed.
+     * @return Integer
+     */
+
+    public int size() {
+        return numDocs;
+    }
+
+    /**
+     * Score a query made of (possibly boosted) SHOULD term clauses, such as the queries built by EntityRMExpand.
+     * @param query BooleanQuery Query.
+     * @param n Integer Number of top hits.
+     * @return Map where Key = aspect ID and Value = score (as RAMIndex.searchIndex()).
+     * @throws IllegalArgumentException If the query has other clauses.
+     */
+
+    @NotNull
+    public Map<String, Double> search(@NotNull BooleanQuery query, int n) {
+        Map<String, Double> results = new HashMap<>();
+        if (docCount == 0 || n <= 0) {
+            return results;
+        }
+
+        // Merge duplicate clauses by summing their boosts, as BooleanQuery.rewrite() does
+        Map<String, Double> boosts = new LinkedHashMap<>();
+        for (BooleanClause clause : query.clauses()) {
+            if (clause.getOccur() != BooleanClause.Occur.SHOULD) {
+                throw new IllegalArgumentException("Unsupported clause: " + clause);
+            }
+            double boost = 1;
+            Query q = clause.getQuery();
+            while (q instanceof BoostQuery) {
+                boost *= ((BoostQuery) q).getBoost();
+                q = ((BoostQuery) q).getQuery();
+            }
+            if (!(q instanceof TermQuery)) {
+                throw new IllegalArgumentException("Unsupported clause: " + clause);
+            }
+            Term term = ((TermQuery) q).getTerm();
+            if (term.field().equals(field)) {
+                boosts.merge(term.text(), boost, Double::sum);
+            }
+        }
+
+        float avgdl = sumTotalTermFreq <= 0 ? 1f : (float) (sumTotalTermFreq / (double) docCount);
+        Arrays.fill(scores, 0, numDocs, 0f);
+        Arrays.fill(matched, 0, numDocs, false);
+        int numMatched = 0;
+        for (Map.Entry<String, Double> entry : boosts.entrySet()) {
+            int termId = find(entry.getKey());
+            if (termId < 0) {
+                continue;
+            }
+            int docFreq = postingStart[termId + 1] - postingStart[termId];
+            float idf = (float) Math.log(1 + (docCount - docFreq + 0.5D) / (docFreq + 0.5D));
+            float weight = idf * entry.getValue().floatValue() * (k1 + 1);
+            for (int p = postingStart[termId]; p < postingStart[termId + 1]; p++) {
+                int doc = docs[p];
+                float freq = freqs[p];
+                float norm = k1 * ((1 - b) + b * SmallFloat.byte4ToInt(SmallFloat.intToByte4(lengths[doc])) / avgdl);
+                scores[doc] += weight * freq / (freq + norm);
+                if (!matched[doc]) {
+                    matched[doc] = true;
+                    numMatched++;
+                }
+            }
+        }
+
+        // Top n by score, ties to the earlier aspect (as TopScoreDocCollector)
+        Integer[] hits = new Integer[numMatched];
+        for (int doc = 0, i = 0; doc < numDocs; doc++) {
+            if (matched[doc]) {
+                hits[i++] = doc;
+            }
+        }
+        Arrays.sort(hits, (d1, d2) -> scores[d1] != scores[d2] ? Float.compare(scores[d2], scores[d1]) : d1 - d2);
+        for (int i = 0; i < Math.min(n, hits.length); i++) {
+            results.put(ids[hits[i]], (double) scores[hits[i]]);
+        }
+        return results;
+    }
+
+    private void addDocument(String id, String text) throws IOException {
+        int doc = numDocs++;
+        ids[doc] = id;
+        int length = 0, numTouched = 0;
+        try (TokenStream tokenStream = analyzer.tokenStream(field, text == null ? "" : text)) {
+            CharTermAttribute termAttribute = tokenStream.addAttribute(CharTermAttribute.class);
+            PositionIncrementAttribute positionAttribute = tokenStream.addAttribute(PositionIncrementAttribute.class);
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) {
+                if (positionAttribute.getPositionIncrement() != 0) {
+                    length++; // overlapping tokens do not count towards the length (discountOverlaps)
+                }
+                int termId = intern(termAttribute.buffer(), termAttribute.length());
+                if (freqInDoc[termId]++ == 0) {
+                    touched = grow(touched, numTouched + 1);
+                    touched[numTouched++] = termId;
+                }
+            }
+            tokenStream.end();
+        }
+        lengths[doc] = length;
+        if (numTouched == 0) {
+            return;
+        }
+        docCount++;
+        ensurePostings(numPostings + numTouched);
+        for (int i = 0; i < numTouched; i++) {
+            int termId = touched[i];
+            postingTerm[numPostings] = termId;
+            postingDoc[numPostings] = doc;
+            postingFreq[numPostings++] = freqInDoc[termId];
+            sumTotalTermFreq += freqInDoc[termId];
+            freqInDoc[termId] = 0;
+        }
+    }
+
+    private void groupPostings() {
+        postingStart = grow(postingStart, numTerms + 1);
+        Arrays.fill(postingStart, 0, numTerms + 1, 0);
+        for (int p = 0; p < numPostings; p++) {
+            postingStart[postingTerm[p] + 1]++;
+        }
+        for (int t = 0; t < numTerms; t++) {
+            postingStart[t + 1] += postingStart[t];
+        }
+        int[] next = Arrays.copyOf(postingStart, numTerms);
+        for (int p = 0; p < numPostings; p++) {
+            int slot = next[postingTerm[p]]++;
+            docs[slot] = postingDoc[p];
+            freqs[slot] = postingFreq[p];
+        }
+    }
+
+    private int intern(char[] buffer, int length) {
+        int slot = hash(buffer, 0, length) & (table.length - 1);
+        while (table[slot] != 0) {
+            int termId = table[slot] - 1;
+            if (equals(termId, buffer, 0, length)) {
+                return termId;
+            }
+            slot = (slot + 1) & (table.length - 1);
+        }
+        int termId = numTerms++;
+        chars = grow(chars, numChars + length);
+        System.arraycopy(buffer, 0, chars, numChars, length);
+        termStart = grow(termStart, numTerms);
+        termLength = grow(termLength, numTerms);
+        freqInDoc = grow(freqInDoc, numTerms);
+        termStart[termId] = numChars;
+        termLength[termId] = length;
+        numChars += length;
+        table[slot] = termId + 1;
+        if (numTerms * 2 > table.length) {
+            rehash();
+        }
+        return termId;
+    }
+
+    private int find(String term) {
+        char[] buffer = term.toCharArray();
+        int slot = hash(buffer, 0, buffer.length) & (table.length - 1);
+        while (table[slot] != 0) {
+            int termId = table[slot] - 1;
+            if (equals(termId, buffer, 0, buffer.length)) {
+                return termId;
+            }
+            slot = (slot + 1) & (table.length - 1);
+        }
+        return -1;
+    }
+
+    private boolean equals(int termId, char[] buffer, int offset, int length) {
+        if (termLength[termId] != length) {
+            return false;
+        }
+        int start = termStart[termId];
+        for (int i = 0; i < length; i++) {
+            if (chars[start + i] != buffer[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        for (int termId = 0; termId < numTerms; termId++) {
+            int slot = hash(chars, termStart[termId], termLength[termId]) & (table.length - 1);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (table.length - 1);
+            }
+            table[slot] = termId + 1;
+        }
+    }
+
+    private static int hash(char[] buffer, int offset, int length) {
+        int h = 0;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + buffer[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private void ensureDocs(int size) {
+        if (ids.length < size) {
+            ids = new String[Math.max(size, ids.length * 2)];
+            lengths = new int[ids.length];
+            scores = new float[ids.length];
+            matched = new boolean[ids.length];
+        }
+    }
+
+    private void ensurePostings(int size) {
+        if (postingTerm.length < size) {
+            int capacity = Math.max(size, postingTerm.length * 2);
+            postingTerm = Arrays.copyOf(postingTerm, capacity);
+            postingDoc = Arrays.copyOf(postingDoc, capacity);
+            postingFreq = Arrays.copyOf(postingFreq, capacity);
+            docs = new int[capacity];
+            freqs = new int[capacity];
+        }
+    }
+
+    @NotNull
+    private static int[] grow(@NotNull int[] array, int size) {
+        return array.length >= size ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+    }
+
+    @NotNull
+    private static char[] grow(@NotNull char[] array, int size) {
+        return array.length >= size ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+    }
+}
@@ -7,6 +7,8 @@ import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.*;
@@ -17,13 +19,48 @@ import org.apache.lucene.search.similarities.BM25Similarity;
 import org.apache.lucene.search.similarities.Similarity;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 /**
@@ -48,9 +85,35 @@ public class Index
     private static int COUNT;
 
     //private static String ENTITY_FILE;
-    private  static IndexSearcher is = null;
-    private  static QueryParser qp = null;
+    /**
+     * Index set up last, searched by the static Search methods that do not take a searcher
+     */
+    private static volatile IndexHandle current = null;
     private static ProgressBar pb;
+    /**
+     * Stored fields of a paragraph document, as the experiments read them: the paragraph id, its text and its
+     * entities as one space-joined string (e.g. "new_york barack_obama")
+     */
+    public static final String ID_FIELD = "id";
+    public static final String TEXT_FIELD = "text";
+    public static final String ENTITY_STRING_FIELD = "entity";
+    /**
+     * Ids of the pages a paragraph links to, one value per page (see Build.Layout.LINKS)
+     */
+    public static final String LINK_FIELD = "paraentity";
+    /**
+     * Multi-valued field with the entities of a paragraph (indexed, with sorted set doc values)
+     */
+    public static final String ENTITY_FIELD = "entities";
+    /**
+     * Number of occurrences of the entities of a paragraph that occur more than once (sorted numeric doc values)
+     */
+    public static final String ENTITY_COUNT_FIELD = "entitycounts";
+    /**
+     * Field infos of ENTITY_FIELD per reader (merging the field infos of all segments is not free)
+     */
+    private static final Map<IndexReader, Optional<FieldInfo>> ENTITY_FIELD_INFOS =
+            Collections.synchronizedMap(new WeakHashMap<>());
     /**
      * Inner class to build a luecene index
      * @author Shubham Chatterjee
@@ -58,6 +121,38 @@ public class Index
      */
     public  final static class Build
     {
+        /**
+         * Number of paragraphs handed to a worker at a time by createIndexParallel()
+         */
+        private static final int BATCH_SIZE = 256;
+        /**
+         * Marks the end of the input for a worker of createIndexParallel()
+         */
+        private static final List<Data.Paragraph> END = Collections.emptyList();
+        /**
+         * Fields of the paragraph documents written by the parallel and checkpointed builds
+         */
+        public enum Layout
+        {
+            /**
+             * ID_FIELD, TEXT_FIELD, ENTITY_STRING_FIELD (space-joined entity names) and the entities as ENTITY_FIELD
+             */
+            PARAGRAPHS,
+            /**
+             * ID_FIELD, TEXT_FIELD and one LINK_FIELD per page id linked from the paragraph
+             */
+            LINKS
+        }
+        /**
+         * Keys of the commit user data written by createIndexCheckpointed()
+         */
+        private static final String CHECKPOINT_FILE = "cbor.file";
+        private static final String CHECKPOINT_OFFSET = "cbor.offset";
+        private static final String CHECKPOINT_HEADER = "cbor.header";
+        private static final String CHECKPOINT_COUNT = "para.count";
+        private static final String CHECKPOINT_FIRST = "para.first";
+        private static final String CHECKPOINT_LAST = "para.last";
+        private static final String CHECKPOINT_COMPLETE = "complete";
         /**
          * Builds a Lucene index of paragraphs in CBOR_FILE in the directory pointed to by INDEX_DIR
          * @param INDEX_DIR String Directory to store index
@@ -98,9 +193,9 @@ public class Index
 
             COUNT++;
             Document doc = new Document();
-            doc.add(new StringField("paraentity", entity, Field.Store.YES));
-            doc.add(new TextField("parabody", text, Field.Store.YES));
-            doc.add(new StringField("paraid", id, Field.Store.YES));
+            doc.add(new StringField(LINK_FIELD, entity, Field.Store.YES));
+            doc.add(new TextField(TEXT_FIELD, text, Field.Store.YES));
+            doc.add(new StringField(ID_FIELD, id, Field.Store.YES));
             System.out.println(id);
             return doc;
         }
@@ -112,30 +207,7 @@ public class Index
         private static Document createDocument(Data.Paragraph para)
         {
             COUNT++;
-            Document paradoc = new Document();
-            List<String> entity = para.getEntitiesOnly();
-            String entityString = "";
-			/*try {
-				BufferedReader reader = new BufferedReader((new FileReader(ENTITY_FILE)));
-				String s;
-				while((s = reader.readLine()) != null){
-
-
-				}
-			} catch (FileNotFoundException e) {
-				e.printStackTrace();
-			} catch (IOException e) {
-				e.printStackTrace();
-			}*/
-            for(String s : entity)
-            {
-                s = s.replaceAll("\\s+", "_").toLowerCase();
-                entityString += " "+s;
-            }
-            entity = null;
-            paradoc.add(new StringField("paraid", para.getParaId(), Field.Store.YES));
-            paradoc.add(new StringField("paraentity", entityString, Field.Store.YES));
-            paradoc.add(new TextField("parabody", para.getTextOnly(), Field.Store.YES));
+            Document paradoc = toDocument(para);
             System.out.println(para.getParaId());
 
             return paradoc;
@@ -188,7 +260,10 @@ public class Index
          * Create a Lucene index for each entity in each paragraph using the given analyzer
          * @param analyzer  Analyzer Analyzer to use to create the index
          * @throws IOException
+         * @deprecated Writes the whole paragraph once per link. Use createIndexParallel() with Layout.LINKS, which
+         * writes each paragraph once with all its link targets in LINK_FIELD.
          */
+        @Deprecated
         public static void createIndex2(Analyzer analyzer)throws IOException
         {
             IndexWriter writer = createWriter(analyzer);
@@ -216,6 +291,668 @@ public class Index
             }
             writer.close();
         }
+        /**
+         * Create a Lucene index for each paragraph with text and id, like createIndex(), using several writers.
+         * One thread decodes the CBOR file and hands batches of paragraphs to the workers through a bounded queue.
+         * Each worker has its own IndexWriter on a separate sub-index (under INDEX_DIR.parts), so the workers never
+         * contend for one writer. At the end, the sub-indexes are merged into INDEX_DIR with addIndexes() and deleted.
+         * @param analyzer Analyzer Analyzer to use to create the index
+         * @param threads Integer Number of worker threads (and sub-indexes)
+         * @param ramBufferMB Double RAM buffer of each writer in MB (flushed to a segment when full)
+         * @param mergePolicy String Merge policy of the writers (tiered|log|none)
+         * @throws IOException
+         */
+        public static void createIndexParallel(Analyzer analyzer,
+                                               int threads,
+                                               double ramBufferMB,
+                                               String mergePolicy)throws IOException
+        {
+            createIndexParallel(analyzer, threads, ramBufferMB, mergePolicy, Layout.PARAGRAPHS);
+        }
+        /**
+         * Create a Lucene index of the paragraphs with the given layout using several writers
+         * (see createIndexParallel(Analyzer, int, double, String))
+         * @param analyzer Analyzer Analyzer to use to create the index
+         * @param threads Integer Number of worker threads (and sub-indexes)
+         * @param ramBufferMB Double RAM buffer of each writer in MB (flushed to a segment when full)
+         * @param mergePolicy String Merge policy of the writers (tiered|log|none)
+         * @param layout Layout Fields of the paragraph documents
+         * @throws IOException
+         */
+        public static void createIndexParallel(Analyzer analyzer,
+                                               int threads,
+                                               double ramBufferMB,
+                                               String mergePolicy,
+                                               Layout layout)throws IOException
+        {
+            Path partsDir = Paths.get(INDEX_DIR + ".parts");
+            // Sub-indexes left behind by an aborted run would be merged again
+            deleteRecursively(partsDir);
+            BlockingQueue<List<Data.Paragraph>> queue = new ArrayBlockingQueue<>(threads * 4);
+            AtomicLong indexed = new AtomicLong();
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            ExecutorService workers = Executors.newFixedThreadPool(threads);
+            List<Future<Directory>> parts = new ArrayList<>();
+            long start = System.nanoTime();
+
+            try
+            {
+                for (int i = 0; i < threads; i++)
+                {
+                    Path partDir = partsDir.resolve("part-" + i);
+                    parts.add(workers.submit(() ->
+                    {
+                        Directory dir = FSDirectory.open(partDir);
+                        IndexWriterConfig partConf = createConfig(analyzer, ramBufferMB, mergePolicy);
+                        partConf.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+                        try (IndexWriter writer = new IndexWriter(dir, partConf))
+                        {
+                            for (List<Data.Paragraph> batch = queue.take(); batch != END; batch = queue.take())
+                            {
+                                for (Data.Paragraph paragraph : batch)
+                                {
+                                    writer.addDocument(toDocument(paragraph, layout));
+                                }
+                                indexed.addAndGet(batch.size());
+                                pb.stepBy(batch.size());
+                            }
+                            writer.commit();
+                        }
+                        catch (Throwable e)
+                        {
+                            failure.compareAndSet(null, e);
+                            // Nobody gets the directory of a failed worker
+                            try
+                            {
+                                dir.close();
+                            }
+                            catch (IOException suppressed)
+                            {
+                                e.addSuppressed(suppressed);
+                            }
+                            throw e;
+                        }
+                        return dir;
+                    }));
+                }
+
+                // Decode on this thread
+                try (BufferedInputStream bis = new BufferedInputStream(new FileInputStream(new File(CBOR_FILE)),
+                        1 << 20))
+                {
+                    List<Data.Paragraph> batch = new ArrayList<>(BATCH_SIZE);
+                    for (Data.Paragraph paragraph : DeserializeData.iterableParagraphs(bis))
+                    {
+                        batch.add(paragraph);
+                        if (batch.size() == BATCH_SIZE)
+                        {
+                            hand(queue, batch, failure);
+                            batch = new ArrayList<>(BATCH_SIZE);
+                        }
+                    }
+                    if (!batch.isEmpty())
+                    {
+                        hand(queue, batch, failure);
+                    }
+                    for (int i = 0; i < threads; i++)
+                    {
+                        hand(queue, END, failure);
+                    }
+                }
+                catch (IOException | RuntimeException e)
+                {
+                    // Stop the workers waiting for input that will never come
+                    workers.shutdownNow();
+                    throw e;
+                }
+                workers.shutdown();
+
+                Directory[] dirs = new Directory[threads];
+                try
+                {
+                    for (int i = 0; i < threads; i++)
+                    {
+                        dirs[i] = parts.get(i).get();
+                    }
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+                catch (ExecutionException e)
+                {
+                    throw new IOException(e.getCause());
+                }
+                pb.close();
+                long decoded = System.nanoTime();
+                COUNT = (int) indexed.get();
+                System.out.printf("Indexed %d paragraphs in %.1f s (%.0f docs/sec) with %d writers%n", indexed.get(),
+                        (decoded - start) / 1e9, indexed.get() / ((decoded - start) / 1e9), threads);
+
+                // Merge the sub-indexes
+                IndexWriterConfig conf = createConfig(analyzer, ramBufferMB, mergePolicy);
+                conf.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+                try (Directory indexDir = FSDirectory.open(Paths.get(INDEX_DIR));
+                     IndexWriter writer = new IndexWriter(indexDir, conf))
+                {
+                    writer.addIndexes(dirs);
+                    writer.commit();
+                }
+                long merged = System.nanoTime();
+                System.out.printf("Merged %d sub-indexes in %.1f s (%.0f docs/sec overall)%n", threads,
+                        (merged - decoded) / 1e9, indexed.get() / ((merged - start) / 1e9));
+            }
+            finally
+            {
+                // Also when decoding, a worker or the merge failed
+                closeParts(workers, parts);
+                deleteRecursively(partsDir);
+            }
+        }
+        /**
+         * Create a Lucene index for each paragraph with text and id, like createIndexParallel(), but resumable.
+         * All workers add to one IndexWriter. Every commitEvery paragraphs, the decoding thread waits for the workers
+         * to finish the paragraphs handed out so far and commits, with the position in the CBOR file as commit user
+         * data. If INDEX_DIR already holds a checkpoint of an unfinished build of the same CBOR file, the index is
+         * opened in APPEND mode and decoding continues from the checkpoint instead of starting over.
+         * @param analyzer Analyzer Analyzer to use to create the index
+         * @param threads Integer Number of worker threads
+         * @param ramBufferMB Double RAM buffer of the writer in MB
+         * @param mergePolicy String Merge policy of the writer (tiered|log|none)
+         * @param commitEvery Integer Number of paragraphs between two checkpoints
+         * @throws IOException
+         */
+        public static void createIndexCheckpointed(Analyzer analyzer,
+                                                   int threads,
+                                                   double ramBufferMB,
+                                                   String mergePolicy,
+                                                   int commitEvery)throws IOException
+        {
+            createIndexCheckpointed(analyzer, threads, ramBufferMB, mergePolicy, commitEvery, Layout.PARAGRAPHS);
+        }
+        /**
+         * Create a Lucene index of the paragraphs with the given layout, resumable
+         * (see createIndexCheckpointed(Analyzer, int, double, String, int))
+         * @param analyzer Analyzer Analyzer to use to create the index
+         * @param threads Integer Number of worker threads
+         * @param ramBufferMB Double RAM buffer of the writer in MB
+         * @param mergePolicy String Merge policy of the writer (tiered|log|none)
+         * @param commitEvery Integer Number of paragraphs between two checkpoints
+         * @param layout Layout Fields of the paragraph documents
+         * @throws IOException
+         */
+        public static void createIndexCheckpointed(Analyzer analyzer,
+                                                   int threads,
+                                                   double ramBufferMB,
+                                                   String mergePolicy,
+                                                   int commitEvery,
+                                                   Layout layout)throws IOException
+        {
+            Directory indexDir = FSDirectory.open(Paths.get(INDEX_DIR));
+            Map<String, String> checkpoint = readCheckpoint(indexDir);
+            boolean resume = checkpoint != null;
+            if (resume && "true".equals(checkpoint.get(CHECKPOINT_COMPLETE)))
+            {
+                System.out.println("Index at " + INDEX_DIR + " is complete (" + checkpoint.get(CHECKPOINT_COUNT) +
+                        " paragraphs). Nothing to do.");
+                indexDir.close();
+                return;
+            }
+            long count = resume ? Long.parseLong(checkpoint.get(CHECKPOINT_COUNT)) : 0L;
+            long offset = resume ? Long.parseLong(checkpoint.get(CHECKPOINT_OFFSET)) : 0L;
+            int headerSize = resume ? Integer.parseInt(checkpoint.get(CHECKPOINT_HEADER)) : 0;
+            String firstId = resume ? checkpoint.get(CHECKPOINT_FIRST) : null;
+            String lastId = resume ? checkpoint.get(CHECKPOINT_LAST) : null;
+            if (resume)
+            {
+                System.out.println("Resuming from checkpoint: " + count + " paragraphs indexed, CBOR offset " +
+                        offset);
+                pb.stepBy(count);
+            }
+
+            IndexWriterConfig conf = createConfig(analyzer, ramBufferMB, mergePolicy);
+            conf.setOpenMode(resume ? IndexWriterConfig.OpenMode.APPEND : IndexWriterConfig.OpenMode.CREATE);
+            IndexWriter writer = new IndexWriter(indexDir, conf);
+            BlockingQueue<List<Data.Paragraph>> queue = new ArrayBlockingQueue<>(threads * 4);
+            AtomicLong pending = new AtomicLong();
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            ExecutorService workers = Executors.newFixedThreadPool(threads);
+            for (int i = 0; i < threads; i++)
+            {
+                workers.submit(() ->
+                {
+                    try
+                    {
+                        for (List<Data.Paragraph> batch = queue.take(); batch != END; batch = queue.take())
+                        {
+                            for (Data.Paragraph paragraph : batch)
+                            {
+                                writer.addDocument(toDocument(paragraph, layout));
+                            }
+                            pb.stepBy(batch.size());
+                            if (pending.decrementAndGet() == 0)
+                            {
+                                synchronized (pending)
+                                {
+                                    pending.notifyAll();
+                                }
+                            }
+                        }
+                    }
+                    catch (Throwable e)
+                    {
+                        failure.compareAndSet(null, e);
+                        synchronized (pending)
+                        {
+                            pending.notifyAll();
+                        }
+                    }
+                    return null;
+                });
+            }
+
+            long start = System.nanoTime();
+            long indexed = 0;
+            try (FileChannel channel = FileChannel.open(Paths.get(CBOR_FILE), StandardOpenOption.READ))
+            {
+                long size = channel.size();
+                // On resume, the decoder sees the header of the file followed by the rest of the file from the
+                // checkpoint on, so it starts at a paragraph boundary.
+                // The iterator may read ahead, so the "header" may end with the first paragraph, and the checkpoint
+                // may be the start of the last paragraph indexed instead of the one after it. Either comes first,
+                // so the first two paragraphs decoded are skipped if they are the first or last one indexed.
+                int toCheck = resume ? 2 : 0;
+                InputStream in;
+                if (resume)
+                {
+                    ByteBuffer header = ByteBuffer.allocate(headerSize);
+                    while (header.hasRemaining() && channel.read(header) >= 0)
+                    {
+                        // Keep reading
+                    }
+                    channel.position(offset);
+                    in = new SequenceInputStream(new ByteArrayInputStream(header.array(), 0, header.position()),
+                            Channels.newInputStream(channel));
+                }
+                else
+                {
+                    in = Channels.newInputStream(channel);
+                }
+                CountingInputStream counter = new CountingInputStream(new BufferedInputStream(in, 1 << 20),
+                        resume ? offset - headerSize : 0L);
+                Iterator<Data.Paragraph> it = DeserializeData.iterableParagraphs(counter).iterator();
+                if (!resume)
+                {
+                    headerSize = (int) counter.getCount();
+                }
+
+                List<Data.Paragraph> batch = new ArrayList<>(BATCH_SIZE);
+                while (true)
+                {
+                    // Offset before decoding the next paragraph: the start of the paragraph, or of the one after it
+                    // if the iterator reads ahead
+                    long before = counter.getCount();
+                    if (!it.hasNext())
+                    {
+                        break;
+                    }
+                    Data.Paragraph paragraph = it.next();
+                    String id = paragraph.getParaId();
+                    if (toCheck > 0)
+                    {
+                        toCheck--;
+                        if (id.equals(firstId) || id.equals(lastId))
+                        {
+                            continue;
+                        }
+                    }
+                    if (firstId == null)
+                    {
+                        firstId = id;
+                    }
+                    batch.add(paragraph);
+                    lastId = id;
+                    count++;
+                    indexed++;
+                    if (batch.size() == BATCH_SIZE || count % commitEvery == 0)
+                    {
+                        pending.incrementAndGet();
+                        hand(queue, batch, failure);
+                        batch = new ArrayList<>(BATCH_SIZE);
+                    }
+                    if (count % commitEvery == 0)
+                    {
+                        awaitIdle(pending, failure);
+                        commitCheckpoint(writer, before, headerSize, count, firstId, lastId, false);
+                    }
+                }
+                if (!batch.isEmpty())
+                {
+                    pending.incrementAndGet();
+                    hand(queue, batch, failure);
+                }
+                for (int i = 0; i < threads; i++)
+                {
+                    hand(queue, END, failure);
+                }
+                awaitIdle(pending, failure);
+                commitCheckpoint(writer, size, headerSize, count, firstId, lastId, true);
+            }
+            catch (IOException | RuntimeException e)
+            {
+                // Stop the workers; the last checkpoint stays the latest commit
+                workers.shutdownNow();
+                writer.rollback();
+                indexDir.close();
+                throw e;
+            }
+            workers.shutdown();
+            writer.close();
+            indexDir.close();
+            pb.close();
+            COUNT = (int) count;
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Indexed %d paragraphs in %.1f s (%.0f docs/sec), %d in total%n", indexed, seconds,
+                    indexed / seconds, count);
+        }
+        /**
+         * Read the checkpoint of a checkpointed build from the latest commit of an index
+         * @param indexDir Directory Index directory
+         * @return Map The commit user data, or null if there is no index or it was not built by a checkpointed build
+         * of CBOR_FILE
+         * @throws IOException
+         */
+        private static Map<String, String> readCheckpoint(Directory indexDir)throws IOException
+        {
+            if (!DirectoryReader.indexExists(indexDir))
+            {
+                return null;
+            }
+            Map<String, String> userData = SegmentInfos.readLatestCommit(indexDir).getUserData();
+            if (!userData.containsKey(CHECKPOINT_OFFSET))
+            {
+                return null;
+            }
+            if (!new File(CBOR_FILE).getAbsolutePath().equals(userData.get(CHECKPOINT_FILE)))
+            {
+                System.out.println("Checkpoint in " + INDEX_DIR + " is for " + userData.get(CHECKPOINT_FILE) +
+                        ". Rebuilding the index.");
+                return null;
+            }
+            return userData;
+        }
+        private static void commitCheckpoint(IndexWriter writer,
+                                             long offset,
+                                             int headerSize,
+                                             long count,
+                                             String firstId,
+                                             String lastId,
+                                             boolean complete)throws IOException
+        {
+            Map<String, String> userData = new HashMap<>();
+            userData.put(CHECKPOINT_FILE, new File(CBOR_FILE).getAbsolutePath());
+            userData.put(CHECKPOINT_OFFSET, Long.toString(offset));
+            userData.put(CHECKPOINT_HEADER, Integer.toString(headerSize));
+            userData.put(CHECKPOINT_COUNT, Long.toString(count));
+            userData.put(CHECKPOINT_FIRST, firstId == null ? "" : firstId);
+            userData.put(CHECKPOINT_LAST, lastId == null ? "" : lastId);
+            userData.put(CHECKPOINT_COMPLETE, Boolean.toString(complete));
+            writer.setLiveCommitData(userData.entrySet());
+            writer.commit();
+        }
+        /**
+         * Wait until the workers have indexed every batch handed to them
+         */
+        private static void awaitIdle(AtomicLong pending, AtomicReference<Throwable> failure)throws IOException
+        {
+            synchronized (pending)
+            {
+                while (pending.get() > 0 && failure.get() == null)
+                {
+                    try
+                    {
+                        pending.wait(1000);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                        throw new IOException(e);
+                    }
+                }
+            }
+            if (failure.get() != null)
+            {
+                throw new IOException("Indexing worker failed", failure.get());
+            }
+        }
+        /**
+         * Create the configuration of a writer for the parallel build
+         * @param analyzer Analyzer Analyzer to use to create the index
+         * @param ramBufferMB Double RAM buffer in MB
+         * @param mergePolicy String Merge policy (tiered|log|none)
+         * @return IndexWriterConfig
+         */
+        private static IndexWriterConfig createConfig(Analyzer analyzer, double ramBufferMB, String mergePolicy)
+        {
+            IndexWriterConfig conf = new IndexWriterConfig(analyzer);
+            conf.setRAMBufferSizeMB(ramBufferMB);
+            conf.setMaxBufferedDocs(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+            switch (mergePolicy.toLowerCase())
+            {
+                case "tiered":
+                    conf.setMergePolicy(new TieredMergePolicy());
+                    break;
+                case "log":
+                    conf.setMergePolicy(new LogByteSizeMergePolicy());
+                    break;
+                case "none":
+                    conf.setMergePolicy(NoMergePolicy.INSTANCE);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown merge policy: " + mergePolicy);
+            }
+            return conf;
+        }
+        /**
+         * Stop the workers of createIndexParallel() and close the sub-indexes of those that finished
+         * (a failed worker closes its own)
+         */
+        private static void closeParts(ExecutorService workers, List<Future<Directory>> parts)
+        {
+            workers.shutdownNow();
+            for (Future<Directory> part : parts)
+            {
+                try
+                {
+                    part.get().close();
+                }
+                catch (ExecutionException | CancellationException e)
+                {
+                    // The worker failed, so it has no directory to close
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                catch (IOException e)
+                {
+                    System.err.println("ERROR in Index.Build.closeParts(): " + e.getClass().getCanonicalName());
+                }
+            }
+        }
+        /**
+         * Hand a batch to the workers, giving up if a worker has failed (nobody would take it)
+         */
+        private static void hand(BlockingQueue<List<Data.Paragraph>> queue,
+                                 List<Data.Paragraph> batch,
+                                 AtomicReference<Throwable> failure)throws IOException
+        {
+            try
+            {
+                while (!queue.offer(batch, 1, TimeUnit.SECONDS))
+                {
+                    if (failure.get() != null)
+                    {
+                        throw new IOException("Indexing worker failed", failure.get());
+                    }
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+        /**
+         * Create a document of the specified paragraph with the given layout
+         * @param para Data.Paragraph A paragraph object
+         * @param layout Layout Fields of the document
+         * @return Document
+         */
+        private static Document toDocument(Data.Paragraph para, Layout layout)
+        {
+            return layout == Layout.LINKS ? toLinkDocument(para) : toDocument(para);
+        }
+        /**
+         * Create a document of the specified paragraph with id, text and the ids of the pages it links to
+         * (LINK_FIELD, one value per distinct link target). This holds the same information as the documents of
+         * createIndex2(), which repeats the paragraph once per link, but stores the text once.
+         * An entity is looked up with a term query on LINK_FIELD, e.g. Search.searchIndex(LINK_FIELD, pageId, n).
+         * @param para Data.Paragraph A paragraph object
+         * @return Document
+         */
+        private static Document toLinkDocument(Data.Paragraph para)
+        {
+            Document paradoc = new Document();
+            paradoc.add(new StringField(ID_FIELD, para.getParaId(), Field.Store.YES));
+            paradoc.add(new TextField(TEXT_FIELD, para.getTextOnly(), Field.Store.YES));
+            Set<String> targets = new LinkedHashSet<>();
+            for (Data.ParaBody body : para.getBodies())
+            {
+                if (body instanceof Data.ParaLink)
+                {
+                    targets.add(((Data.ParaLink) body).getPageId());
+                }
+            }
+            for (String target : targets)
+            {
+                paradoc.add(new StringField(LINK_FIELD, target, Field.Store.YES));
+            }
+            return paradoc;
+        }
+        /**
+         * Create a document of the specified paragraph with id, entities and text,
+         * without counting or printing (safe to call from several threads)
+         * @param para Data.Paragraph A paragraph object
+         * @return Document A document containing the text and id as fields
+         */
+        private static Document toDocument(Data.Paragraph para)
+        {
+            StringBuilder entityString = new StringBuilder();
+            TreeMap<BytesRef, Integer> entityCounts = new TreeMap<>();
+            for (String s : para.getEntitiesOnly())
+            {
+                s = s.replaceAll("\\s+", "_").toLowerCase();
+                entityString.append(' ').append(s);
+                if (!s.isEmpty())
+                {
+                    entityCounts.merge(new BytesRef(s), 1, Integer::sum);
+                }
+            }
+            Document paradoc = new Document();
+            paradoc.add(new StringField(ID_FIELD, para.getParaId(), Field.Store.YES));
+            paradoc.add(new StringField(ENTITY_STRING_FIELD, entityString.toString(), Field.Store.YES));
+            paradoc.add(new TextField(TEXT_FIELD, para.getTextOnly(), Field.Store.YES));
+            addEntities(paradoc, entityCounts);
+            return paradoc;
+        }
+        /**
+         * Input stream that counts the bytes read through it
+         */
+        private static final class CountingInputStream extends FilterInputStream
+        {
+            private long count;
+
+            CountingInputStream(InputStream in, long count)
+            {
+                super(in);
+                this.count = count;
+            }
+            @Override
+            public int read()throws IOException
+            {
+                int b = in.read();
+                if (b >= 0)
+                {
+                    count++;
+                }
+                return b;
+            }
+            @Override
+            public int read(byte[] b, int off, int len)throws IOException
+            {
+                int n = in.read(b, off, len);
+                if (n > 0)
+                {
+                    count += n;
+                }
+                return n;
+            }
+            @Override
+            public long skip(long n)throws IOException
+            {
+                long skipped = in.skip(n);
+                count += skipped;
+                return skipped;
+            }
+            @Override
+            public boolean markSupported()
+            {
+                return false;
+            }
+            long getCount()
+            {
+                return count;
+            }
+        }
+        /**
+         * Add the entities of a paragraph as the multi-valued field ENTITY_FIELD, indexed and with sorted set doc
+         * values, so that they can be read without loading and splitting the stored ENTITY_STRING_FIELD.
+         * A sorted set holds every entity once, in sorted (BytesRef) order. The entities that occur more than once
+         * are also added to ENTITY_COUNT_FIELD as (position in the sorted set << 32 | count).
+         * @param doc Document Document of the paragraph
+         * @param entityCounts TreeMap Number of occurrences of each entity in the paragraph
+         */
+        static void addEntities(Document doc, TreeMap<BytesRef, Integer> entityCounts)
+        {
+            long rank = 0;
+            for (Map.Entry<BytesRef, Integer> entry : entityCounts.entrySet())
+            {
+                doc.add(new StringField(ENTITY_FIELD, entry.getKey(), Field.Store.NO));
+                doc.add(new SortedSetDocValuesField(ENTITY_FIELD, entry.getKey()));
+                if (entry.getValue() > 1)
+                {
+                    doc.add(new SortedNumericDocValuesField(ENTITY_COUNT_FIELD, rank << 32 | entry.getValue()));
+                }
+                rank++;
+            }
+        }
+        private static void deleteRecursively(Path dir)throws IOException
+        {
+            if (!Files.exists(dir))
+            {
+                return;
+            }
+            try (Stream<Path> paths = Files.walk(dir))
+            {
+                for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator)
+                {
+                    Files.delete(path);
+                }
+            }
+        }
     }
     /**
      * Inner class to setup a Lucene index for search
@@ -225,25 +962,18 @@ public class Index
      */
     public final static class Setup
     {
+        private IndexHandle handle;
         /**
          * Set up the searcher with default BM25 similarity and StandardAnalyzer to search in the INDEX_DIR
          * @param INDEX_DIR
          */
         public Setup(String INDEX_DIR)
         {
-            Index.INDEX_DIR = INDEX_DIR;
-            try
-            {
-                is = createSearcher();
-                qp = createParser();
-            }
-            catch (IOException e)
-            {
-                e.printStackTrace();
-            }
+            this(INDEX_DIR, TEXT_FIELD, new StandardAnalyzer(), new BM25Similarity());
         }
         /**
          * Set up the searcher to search a specific field in the index directory provided using the analyzer and similarity given
+         * Every Setup has its own searcher and parser, so several indexes can be set up at once
          * @param INDEX_DIR String Directory for index
          * @param field String Field to search within the index
          * @param analyzer Analyzer Analyzer to use to search the index
@@ -251,11 +981,26 @@ public class Index
          */
         public Setup(String INDEX_DIR, String field, Analyzer analyzer, Similarity sim)
         {
-            Index.INDEX_DIR = INDEX_DIR;
+            this(INDEX_DIR, field, analyzer, sim, true);
+        }
+        /**
+         * Set up the searcher to search a specific field in the index directory provided using the analyzer and similarity given
+         * If the run searches one query at a time (parallel is false) and "-Dsearch.threads=N|auto" is given, the
+         * searcher searches the segments of each query in parallel (see searchThreads())
+         * @param INDEX_DIR String Directory for index
+         * @param field String Field to search within the index
+         * @param analyzer Analyzer Analyzer to use to search the index
+         * @param sim Similarity Similarity metric to use to score the documents
+         * @param parallel Boolean Whether the run searches many queries at once (e.g., with a parallel stream)
+         */
+        public Setup(String INDEX_DIR, String field, Analyzer analyzer, Similarity sim, boolean parallel)
+        {
             try
             {
-                is = createSearcher(sim);
-                qp = createParser(field, analyzer);
+                handle = new IndexHandle(INDEX_DIR, field, analyzer, sim, searchThreads(parallel));
+                current = handle;
+                if (handle.isSearchParallel())
+                    System.out.println("Searching the segments of " + INDEX_DIR + " in parallel.");
             }
             catch (IOException e)
             {
@@ -263,69 +1008,103 @@ public class Index
             }
         }
         /**
-         * Create a searcher which scores documents using the provided similarity metric
-         * @param sim Similarity Similarity metric to use to score the documents
-         * @return IndexSearcher Searcher to search the lucene index
-         * @throws IOException
-         */
-        private IndexSearcher createSearcher(Similarity sim)throws IOException
-        {
-            Directory dir = FSDirectory.open((new File(INDEX_DIR).toPath()));
-            IndexReader reader = DirectoryReader.open(dir);
-            IndexSearcher searcher = new IndexSearcher(reader);
-            searcher.setSimilarity(sim);
-            return searcher;
-        }
-        /**
-         * Create a searcher which scores documents using the default BM25 similarity
-         * @return IndexSearcher Searcher to search the lucene index
-         * @throws IOException
+         * Number of threads that search the segments of one query, from "-Dsearch.threads=N|auto" (default 1)
+         * A run that searches many queries at once already keeps the cores busy (inter-query parallelism), so splitting
+         * each query as well would only oversubscribe them: such a run always gets 1
+         * Otherwise, "auto" uses all cores (intra-query parallelism), which lowers the latency of each query
+         * @param parallel Boolean Whether the run searches many queries at once
+         * @return Integer
          */
-        private IndexSearcher createSearcher()throws IOException
+        public static int searchThreads(boolean parallel)
         {
-            Directory dir = FSDirectory.open((new File(INDEX_DIR).toPath()));
-            IndexReader reader = DirectoryReader.open(dir);
-            IndexSearcher searcher = new IndexSearcher(reader);
-            searcher.setSimilarity(new BM25Similarity());
-            return searcher;
+            String value = System.getProperty("search.threads");
+            if (value == null || value.isEmpty() || parallel)
+                return 1;
+            if ("auto".equalsIgnoreCase(value))
+                return Runtime.getRuntime().availableProcessors();
+            try
+            {
+                return Math.max(1, Integer.parseInt(value));
+            }
+            catch (NumberFormatException e)
+            {
+                System.err.println("ERROR in Index.Setup.searchThreads(): " + e.getClass().getCanonicalName());
+                return 1;
+            }
         }
         /**
-         * Create a query parser which parses queries using the standard analyzer and searcher in the parabody
-         * @return QueryParser Parser to parse the query
-         * @throws IOException
+         * Get the IndexSearcher instance
+         * The searcher is thread-safe and stays valid until the handle is closed
+         * @return IndexSearcher, or null if the index could not be opened
          */
-        private QueryParser createParser()throws IOException
+        public IndexSearcher getSearcher()
         {
-            QueryParser parser = new QueryParser("parabody", new StandardAnalyzer());
-            return parser;
+            if (handle == null)
+                return null;
+            try
+            {
+                return handle.getSearcher();
+            }
+            catch (IOException e)
+            {
+                e.printStackTrace();
+                return null;
+            }
         }
         /**
-         * Create a query parser which parses queries using the analyzer provided and searches the given field
-         * @param field String Field to search the query
-         * @param analyzer Analyzer to use to parse the query
-         * @return QueryParser Parser to parse the query
-         * @throws IOException
+         * Get the QueryParser instance of the calling thread (QueryParser is not thread-safe)
+         * @return QueryParser, or null if the index could not be opened
          */
-        private QueryParser createParser(String field, Analyzer analyzer)throws IOException
+        public QueryParser getParser()
         {
-            QueryParser parser = new QueryParser(field, analyzer);
-            return parser;
+            return handle != null ? handle.getParser() : null;
         }
         /**
-         * Get the IndexSearcher instance
-         * @return IndexSearcher
+         * Warm up the searcher before timing starts: with "-Dindex.warmup=N", run the queries of N distinct entities
+         * spread evenly over the given ones, or of all of them with "-Dindex.warmup=all" (as the experiments do to
+         * build pseudo-documents), and load their top hits. The hits are kept in the ResultCache, so a warm-up with all
+         * the entities of the dataset fills the cache before (parallel) scoring starts
+         * @param entities List Entity names (e.g., the target or the context entities of the dataset)
          */
-        public IndexSearcher getSearcher()
+        public void warmUp(List<String> entities)
         {
-            return is;
+            String value = System.getProperty("index.warmup", "0");
+            List<String> distinct = new ArrayList<>(new LinkedHashSet<>(entities));
+            int n;
+            try
+            {
+                n = "all".equalsIgnoreCase(value) ? distinct.size() : Integer.parseInt(value);
+            }
+            catch (NumberFormatException e)
+            {
+                System.err.println("ERROR in Index.Setup.warmUp(): " + e.getClass().getCanonicalName());
+                return;
+            }
+            if (handle == null || n <= 0 || distinct.isEmpty())
+                return;
+            List<String> queries = new ArrayList<>();
+            int step = Math.max(1, distinct.size() / n);
+            for (int i = 0; i < distinct.size() && queries.size() < n; i += step)
+                queries.add(distinct.get(i).replaceAll("_", " ").toLowerCase());
+            long start = System.currentTimeMillis();
+            try
+            {
+                int count = handle.warm(queries, 100);
+                System.out.println("Warmed up " + handle.getIndexDir() + " with " + count + " queries in " +
+                        (System.currentTimeMillis() - start) + " ms");
+            }
+            catch (IOException e)
+            {
+                e.printStackTrace();
+            }
         }
         /**
-         * Get the QueryParser instance
-         * @return QueryParser
+         * Get the handle to the index
+         * @return IndexHandle, or null if the index could not be opened
          */
-        public QueryParser getParser()
+        public IndexHandle getHandle()
         {
-            return qp;
+            return handle;
         }
     }
     /**
@@ -335,6 +1114,18 @@ public class Index
      */
     public final static class Search
     {
+        /**
+         * Get the index set up last
+         * @return IndexHandle
+         * @throws IOException If no index has been set up
+         */
+        private static IndexHandle current()throws IOException
+        {
+            IndexHandle handle = current;
+            if (handle == null)
+                throw new IOException("No index has been set up");
+            return handle;
+        }
         /**
          * Search the index for the given query and return top n hits
          * @param query String Query to search
@@ -345,9 +1136,7 @@ public class Index
          */
         public static TopDocs searchIndex(String query,int n)throws IOException,ParseException
         {
-            Query q = qp.parse(query);
-            TopDocs tds = is.search(q, n);
-            return tds;
+            return current().search(query, n);
         }
         /**
          * Search the index for the given query and return top n hits
@@ -360,9 +1149,16 @@ public class Index
          */
         public static TopDocs searchIndex(BooleanQuery query,int n)throws IOException
         {
-            TopDocs tds = is.search(query, n);
-            return tds;
+            return current().search(query, n);
         }
+        /**
+         * Search the index for the given query and return top n hits using the given searcher instance
+         * @param booleanQuery BooleanQuery Query to search
+         * @param n Integer Top hits for the query
+         * @param searcher IndexSearcher Searcher to use
+         * @return TopDocs Top documents matching the query
+         * @throws IOException
+         */
         public static TopDocs searchIndex(BooleanQuery booleanQuery,
                                           int n,
                                           IndexSearcher searcher)throws IOException
@@ -375,18 +1171,13 @@ public class Index
          * Use this to search an id or a phone number or another query which is not tokenized by lucene
          * @param field String Field to search
          * @param query String Query to search
-         * @return Document The top document matching the query
+         * @return Document The top document matching the query, or null if there is none
          * @throws IOException
          * @throws ParseException
          */
         public static Document searchIndex(String field,String query)throws IOException,ParseException
         {
-            Term term = new Term(field,query);
-            Query q = new TermQuery(term);
-            TopDocs tds = is.search(q,1);
-            ScoreDoc[] retDocs = tds.scoreDocs;
-            Document d = is.doc(retDocs[0].doc);
-            return d;
+            return current().searchDocument(field, query);
         }
         /**
          * Search the index for the given query in given field and return topmost hit using the given searcher instance
@@ -425,12 +1216,286 @@ public class Index
             HashMap<Document,Float> results = new HashMap<Document,Float>();
             Term term = new Term(field,query);
             Query q = new TermQuery(term);
-            TopDocs tds = is.search(q,n);
-            ScoreDoc[] retDocs = tds.scoreDocs;
-            for (int i = 0; i < retDocs.length; i++)
-                results.put(is.doc(retDocs[i].doc),tds.scoreDocs[i].score);
+            IndexHandle handle = current();
+            IndexSearcher searcher = handle.acquire();
+            try
+            {
+                TopDocs tds = searcher.search(q,n);
+                ScoreDoc[] retDocs = tds.scoreDocs;
+                for (int i = 0; i < retDocs.length; i++)
+                    results.put(searcher.doc(retDocs[i].doc),tds.scoreDocs[i].score);
+            }
+            finally
+            {
+                handle.release(searcher);
+            }
             return results;
         }
+        /**
+         * Search the index for the given query in given field and return the id of the topmost hit, without
+         * loading the document
+         * @param field String Field to search
+         * @param query String Query to search
+         * @param searcher IndexSearcher Searcher to use
+         * @return Integer Lucene document id of the top hit, or -1 if there is no hit
+         * @throws IOException
+         */
+        public static int searchDocId(String field,String query,IndexSearcher searcher)throws IOException
+        {
+            TopDocs tds = searcher.search(new TermQuery(new Term(field,query)),1);
+            return tds.scoreDocs.length != 0 ? tds.scoreDocs[0].doc : -1;
+        }
+        /**
+         * Search the index for many values of a field that is not tokenized (such as the paragraph id) at once.
+         * The values are sorted and looked up with one pass over the terms dictionary of each segment, without
+         * scoring and without loading any document.
+         * @param field String Field to search
+         * @param values List<String> Values to search
+         * @param searcher IndexSearcher Searcher to use
+         * @return int[] Lucene document id of the first live document with each value (in the order of the values),
+         * or -1 for the values that are not found
+         * @throws IOException
+         */
+        public static int[] searchDocIds(String field,List<String> values,IndexSearcher searcher)throws IOException
+        {
+            int n = values.size();
+            int[] docIds = new int[n];
+            Arrays.fill(docIds, -1);
+            BytesRef[] terms = new BytesRef[n];
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++)
+            {
+                terms[i] = new BytesRef(values.get(i));
+                order[i] = i;
+            }
+            Arrays.sort(order, (i, j) -> terms[i].compareTo(terms[j]));
+            int found = 0;
+            for (LeafReaderContext leaf : searcher.getIndexReader().leaves())
+            {
+                Terms fieldTerms = leaf.reader().terms(field);
+                if (fieldTerms == null)
+                {
+                    continue;
+                }
+                TermsEnum termsEnum = fieldTerms.iterator();
+                Bits liveDocs = leaf.reader().getLiveDocs();
+                PostingsEnum postings = null;
+                for (int i : order)
+                {
+                    if (docIds[i] >= 0 || !termsEnum.seekExact(terms[i]))
+                    {
+                        continue;
+                    }
+                    postings = termsEnum.postings(postings, PostingsEnum.NONE);
+                    for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc())
+                    {
+                        if (liveDocs == null || liveDocs.get(doc))
+                        {
+                            docIds[i] = leaf.docBase + doc;
+                            found++;
+                            break;
+                        }
+                    }
+                }
+                if (found == n)
+                {
+                    break;
+                }
+            }
+            return docIds;
+        }
+        /**
+         * Load many documents at once, in increasing order of document id (so that the stored fields are read
+         * sequentially)
+         * @param docIds int[] Lucene document ids (-1 for none)
+         * @param fields Set<String> Stored fields to load, or null for all
+         * @param searcher IndexSearcher Searcher to use
+         * @return Document[] The documents, in the order of the ids (null for -1)
+         * @throws IOException
+         */
+        public static Document[] getDocuments(int[] docIds,Set<String> fields,IndexSearcher searcher)throws IOException
+        {
+            Document[] documents = new Document[docIds.length];
+            Integer[] order = new Integer[docIds.length];
+            for (int i = 0; i < docIds.length; i++)
+            {
+                order[i] = i;
+            }
+            Arrays.sort(order, (i, j) -> Integer.compare(docIds[i], docIds[j]));
+            for (int i : order)
+            {
+                if (docIds[i] >= 0)
+                {
+                    documents[i] = fields != null ? searcher.doc(docIds[i], fields) : searcher.doc(docIds[i]);
+                }
+            }
+            return documents;
+        }
+        /**
+         * Check whether the index has the entities of its paragraphs as doc values (see ENTITY_FIELD)
+         * @param searcher IndexSearcher Searcher of the index
+         * @return Boolean
+         */
+        public static boolean hasEntityDocValues(IndexSearcher searcher)
+        {
+            FieldInfo info = entityFieldInfo(searcher.getIndexReader());
+            return info != null && info.getDocValuesType() == DocValuesType.SORTED_SET;
+        }
+        /**
+         * Check whether the index has postings from entities to the paragraphs that link to them (see ENTITY_FIELD)
+         * @param searcher IndexSearcher Searcher of the index
+         * @return Boolean
+         */
+        public static boolean hasEntityPostings(IndexSearcher searcher)
+        {
+            FieldInfo info = entityFieldInfo(searcher.getIndexReader());
+            return info != null && info.getIndexOptions() != IndexOptions.NONE;
+        }
+        private static FieldInfo entityFieldInfo(IndexReader reader)
+        {
+            return ENTITY_FIELD_INFOS.computeIfAbsent(reader,
+                    r -> Optional.ofNullable(MultiFields.getMergedFieldInfos(r).fieldInfo(ENTITY_FIELD))).orElse(null);
+        }
+        /**
+         * Walk the postings of an entity: the ids of the paragraphs that link to it
+         * @param entity String Entity (as in ENTITY_FIELD, e.g. "new_york")
+         * @param within int[] If not null, only the ids in this sorted array are returned (e.g. the top hits of a
+         * text query, sorted by id)
+         * @param limit Integer Maximum number of ids to return
+         * @param searcher IndexSearcher Searcher of the index
+         * @return int[] Lucene document ids of the paragraphs, in increasing order
+         * @throws IOException
+         */
+        public static int[] searchEntityPostings(String entity,int[] within,int limit,IndexSearcher searcher)throws IOException
+        {
+            BytesRef term = new BytesRef(entity);
+            int[] docIds = new int[within != null ? Math.min(within.length, limit) : Math.min(limit, 1024)];
+            int n = 0;
+            int next = 0; // Next position in within
+            for (LeafReaderContext leaf : searcher.getIndexReader().leaves())
+            {
+                if (n == limit || (within != null && next == within.length))
+                {
+                    break;
+                }
+                int end = leaf.docBase + leaf.reader().maxDoc();
+                Terms terms = leaf.reader().terms(ENTITY_FIELD);
+                TermsEnum termsEnum = terms != null ? terms.iterator() : null;
+                if (termsEnum == null || !termsEnum.seekExact(term))
+                {
+                    while (within != null && next < within.length && within[next] < end)
+                    {
+                        next++;
+                    }
+                    continue;
+                }
+                PostingsEnum postings = termsEnum.postings(null, PostingsEnum.NONE);
+                Bits liveDocs = leaf.reader().getLiveDocs();
+                if (within == null)
+                {
+                    for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS && n < limit;
+                         doc = postings.nextDoc())
+                    {
+                        if (liveDocs == null || liveDocs.get(doc))
+                        {
+                            if (n == docIds.length)
+                            {
+                                docIds = Arrays.copyOf(docIds, Math.min(limit, n * 2));
+                            }
+                            docIds[n++] = leaf.docBase + doc;
+                        }
+                    }
+                    continue;
+                }
+                // Leapfrog over the postings with the sorted ids
+                int doc = -1;
+                for (; next < within.length && within[next] < end && n < limit; next++)
+                {
+                    int target = within[next] - leaf.docBase;
+                    if (target < 0)
+                    {
+                        continue;
+                    }
+                    if (doc < target)
+                    {
+                        doc = postings.advance(target);
+                    }
+                    if (doc == target)
+                    {
+                        docIds[n++] = within[next];
+                    }
+                }
+            }
+            return Arrays.copyOf(docIds, n);
+        }
+        /**
+         * Get the entities of a paragraph from the doc values, without loading the stored document
+         * Entities that occur more than once in the paragraph occur as often in the list
+         * @param docId Integer Lucene document id of the paragraph
+         * @param required String If not null, return null unless the paragraph contains this entity
+         * @param searcher IndexSearcher Searcher of the index
+         * @return ArrayList<String> The entities (in sorted order), or null if the paragraph has none or does not
+         * contain the required entity
+         * @throws IOException
+         */
+        public static ArrayList<String> getEntities(int docId,String required,IndexSearcher searcher)throws IOException
+        {
+            List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+            LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(docId, leaves));
+            int doc = docId - leaf.docBase;
+            SortedSetDocValues entities = DocValues.getSortedSet(leaf.reader(), ENTITY_FIELD);
+            if (!entities.advanceExact(doc))
+            {
+                return null;
+            }
+            long requiredOrd = required != null ? entities.lookupTerm(new BytesRef(required)) : -1;
+            if (required != null && requiredOrd < 0)
+            {
+                // Not in this segment at all
+                return null;
+            }
+            long[] ords = new long[8];
+            int n = 0;
+            boolean found = required == null;
+            for (long ord = entities.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = entities.nextOrd())
+            {
+                if (n == ords.length)
+                {
+                    ords = Arrays.copyOf(ords, n * 2);
+                }
+                ords[n++] = ord;
+                found |= ord == requiredOrd;
+            }
+            if (!found)
+            {
+                return null;
+            }
+            int[] counts = new int[n];
+            Arrays.fill(counts, 1);
+            SortedNumericDocValues entityCounts = DocValues.getSortedNumeric(leaf.reader(), ENTITY_COUNT_FIELD);
+            if (entityCounts.advanceExact(doc))
+            {
+                for (int i = 0; i < entityCounts.docValueCount(); i++)
+                {
+                    long value = entityCounts.nextValue();
+                    int rank = (int) (value >>> 32);
+                    if (rank < n)
+                    {
+                        counts[rank] = (int) value;
+                    }
+                }
+            }
+            ArrayList<String> list = new ArrayList<>(n);
+            for (int i = 0; i < n; i++)
+            {
+                String entity = entities.lookupOrd(ords[i]).utf8ToString();
+                for (int c = 0; c < counts[i]; c++)
+                {
+                    list.add(entity);
+                }
+            }
+            return list;
+        }
     }
     /**
      * Get the index size
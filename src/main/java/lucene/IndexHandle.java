@@ -0,0 +1,366 @@
+package lucene;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.*;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.store.SimpleFSDirectory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ====================================================================================================================
+ * A handle to one open Lucene index, safe to share across threads.
+ * Unlike the static state of Index.Setup/Index.Search, each handle has its own reader, searcher and query parser, so
+ * several indexes (e.g., the paragraph index and the page index) can be open at once.
+ * (1) The reader is reference-counted by a Lucene SearcherManager: acquire() a searcher, use it, release() it. A
+ *     searcher stays valid until released, even if the handle is refreshed or closed in the meantime.
+ * (2) QueryParser is not thread-safe, so every thread gets its own parser (getParser()).
+ * (3) Optionally, the searchers search the segments of the index in parallel on a pool owned by the handle
+ *     (intra-query parallelism). This only pays off when queries are searched one at a time.
+ * (4) The directory implementation is chosen with "-Dindex.directory=fs|mmap|nio|simple" (default fs: let Lucene pick,
+ *     which is mmap on 64-bit JVMs). "-Dindex.preload=EXT,...|all" reads the index files with those extensions (e.g.,
+ *     the postings and the stored fields) once when the handle is opened, so that they are in the page cache before
+ *     the first query instead of being faulted in by it.
+ * ====================================================================================================================
+ * @author Shubham Chatterjee
+ * @version 10/17/2026
+ */
+
+public class IndexHandle implements Closeable {
+
+    private final String indexDir;
+    private final String field;
+    private final Analyzer analyzer;
+    private final Directory directory;
+    private final SearcherManager manager;
+    private final ThreadLocal<QueryParser> parsers;
+    private final ExecutorService executor;
+    private IndexSearcher pinned;
+
+    /**
+     * Constructor. The segments are searched one after the other.
+     * @param indexDir String Path to the index directory.
+     * @param field String Default field of the query parser.
+     * @param analyzer Analyzer Analyzer of the query parser.
+     * @param similarity Similarity Similarity used to score the documents.
+     * @throws IOException If the index could not be opened.
+     */
+
+    public IndexHandle(@NotNull String indexDir,
+                       @NotNull String field,
+                       @NotNull Analyzer analyzer,
+                       @NotNull Similarity similarity) throws IOException {
+        this(indexDir, field, analyzer, similarity, 1);
+    }
+
+    /**
+     * Constructor.
+     * @param indexDir String Path to the index directory.
+     * @param field String Default field of the query parser.
+     * @param analyzer Analyzer Analyzer of the query parser.
+     * @param similarity Similarity Similarity used to score the documents.
+     * @param searchThreads Integer Number of threads searching the segments of one query (1 for none).
+     * @throws IOException If the index could not be opened.
+     */
+
+    public IndexHandle(@NotNull String indexDir,
+                       @NotNull String field,
+                       @NotNull Analyzer analyzer,
+                       @NotNull Similarity similarity,
+                       int searchThreads) throws IOException {
+        this.indexDir = indexDir;
+        this.field = field;
+        this.analyzer = analyzer;
+        this.directory = openDirectory(Paths.get(indexDir), System.getProperty("index.directory", "fs"));
+        ExecutorService pool = null;
+        try {
+            preload(System.getProperty("index.preload"));
+            pool = searchThreads > 1 ? newExecutor(searchThreads) : null;
+            ExecutorService searchExecutor = pool;
+            this.manager = new SearcherManager(directory, new SearcherFactory() {
+                @Override
+                public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) {
+                    IndexSearcher searcher = new IndexSearcher(reader, searchExecutor);
+                    searcher.setSimilarity(similarity);
+                    return searcher;
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            directory.close();
+            if (pool != null) {
+                pool.shutdown();
+            }
+            throw e;
+        }
+        this.executor = pool;
+        this.parsers = ThreadLocal.withInitial(() -> new QueryParser(field, analyzer));
+    }
+
+    /**
+     * Open an index directory with the given implementation.
+     * @param path Path Path to the index directory.
+     * @param type String One of fs (let Lucene pick), mmap, nio or simple.
+     * @return Directory
+     * @throws IOException If the directory could not be opened.
+     */
+
+    @NotNull
+    public static Directory openDirectory(@NotNull Path path, @NotNull String type) throws IOException {
+        switch (type.toLowerCase()) {
+            case "mmap":
+                return new MMapDirectory(path);
+            case "nio":
+                return new NIOFSDirectory(path);
+            case "simple":
+                return new SimpleFSDirectory(path);
+            case "fs":
+                return FSDirectory.open(path);
+            default:
+                throw new IllegalArgumentException("Unknown directory implementation: " + type);
+        }
+    }
+
+    /**
+     * Read index files once, so that they are in the page cache (shared by all directory implementations).
+     * @param extensions String Comma-separated file extensions (e.g., "doc,pos,tim,tip,fdt,fdx"), or "all".
+     *                   Nothing is read if null or empty.
+     * @throws IOException If a file could not be read.
+     */
+
+    public void preload(@Nullable String extensions) throws IOException {
+        if (extensions == null || extensions.isEmpty()) {
+            return;
+        }
+        Set<String> wanted = new HashSet<>(Arrays.asList(extensions.toLowerCase().split("\\s*,\\s*")));
+        Path dir = ((FSDirectory) FilterDirectory.unwrap(directory)).getDirectory();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        long bytes = 0, start = System.currentTimeMillis();
+        for (String file : directory.listAll()) {
+            String extension = IndexFileNames.getExtension(file);
+            if (!wanted.contains("all") && (extension == null || !wanted.contains(extension))) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(dir.resolve(file), StandardOpenOption.READ)) {
+                int read;
+                while ((read = channel.read(buffer)) >= 0) {
+                    bytes += read;
+                    buffer.clear();
+                }
+            }
+        }
+        System.out.println("Preloaded " + (bytes >> 20) + " MB of " + indexDir + " in " +
+                (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Warm up the searcher by running queries and loading the stored fields of their top hits, the way the
+     * experiments build pseudo-documents. The queries are built with QueryTerms and searched through the ResultCache,
+     * so the experiments find their results there. Run it before timing starts.
+     * @param texts List Query texts.
+     * @param n Integer Number of top hits per query.
+     * @return Integer Number of queries run.
+     * @throws IOException If the index could not be searched.
+     */
+
+    public int warm(@NotNull List<String> texts, int n) throws IOException {
+        IndexSearcher searcher = getSearcher();
+        int count = 0;
+        for (String text : texts) {
+            TopDocs topDocs = ResultCache.getInstance().search(searcher, QueryTerms.toQuery(text, field, analyzer), n);
+            for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                searcher.doc(scoreDoc.doc);
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Create the pool searching the segments of a query. The threads are daemons, so an experiment that does not
+     * close the handle still exits.
+     * @param threads Integer Number of threads.
+     * @return ExecutorService
+     */
+
+    @NotNull
+    private static ExecutorService newExecutor(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "index-search-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Whether the segments of a query are searched in parallel.
+     * @return Boolean
+     */
+
+    public boolean isSearchParallel() {
+        return executor != null;
+    }
+
+    /**
+     * Path to the index directory.
+     * @return String
+     */
+
+    @NotNull
+    public String getIndexDir() {
+        return indexDir;
+    }
+
+    /**
+     * Acquire the current searcher. Every call must be paired with a call to release().
+     * @return IndexSearcher
+     * @throws IOException If the searcher could not be acquired (e.g., the handle is closed).
+     */
+
+    @NotNull
+    public IndexSearcher acquire() throws IOException {
+        return manager.acquire();
+    }
+
+    /**
+     * Release a searcher obtained with acquire().
+     * @param searcher IndexSearcher
+     * @throws IOException If the reader could not be released.
+     */
+
+    public void release(@Nullable IndexSearcher searcher) throws IOException {
+        if (searcher != null) {
+            manager.release(searcher);
+        }
+    }
+
+    /**
+     * Get a searcher that stays valid until the handle is closed.
+     * Use this where a searcher is kept in a field for the length of a run (the indexes of this project are not
+     * modified while they are searched); use acquire()/release() otherwise.
+     * @return IndexSearcher
+     * @throws IOException If the searcher could not be acquired.
+     */
+
+    @NotNull
+    public synchronized IndexSearcher getSearcher() throws IOException {
+        if (pinned == null) {
+            pinned = manager.acquire();
+        }
+        return pinned;
+    }
+
+    /**
+     * Get the query parser of the calling thread.
+     * @return QueryParser
+     */
+
+    @NotNull
+    public QueryParser getParser() {
+        return parsers.get();
+    }
+
+    /**
+     * Parse a query with the parser of the calling thread and search it.
+     * @param query String Query.
+     * @param n Integer Number of top hits.
+     * @return TopDocs
+     * @throws IOException
+     * @throws ParseException
+     */
+
+    @NotNull
+    public TopDocs search(@NotNull String query, int n) throws IOException, ParseException {
+        return search(getParser().parse(query), n);
+    }
+
+    /**
+     * Search a query.
+     * @param query Query Query.
+     * @param n Integer Number of top hits.
+     * @return TopDocs
+     * @throws IOException
+     */
+
+    @NotNull
+    public TopDocs search(@NotNull Query query, int n) throws IOException {
+        IndexSearcher searcher = acquire();
+        try {
+            return searcher.search(query, n);
+        } finally {
+            release(searcher);
+        }
+    }
+
+    /**
+     * Search the index for a value of a field that is not tokenized (such as an id) and return the top document.
+     * @param field String Field.
+     * @param value String Value.
+     * @return Document, or null if there is none.
+     * @throws IOException
+     */
+
+    @Nullable
+    public Document searchDocument(@NotNull String field, @NotNull String value) throws IOException {
+        IndexSearcher searcher = acquire();
+        try {
+            TopDocs tds = searcher.search(new TermQuery(new Term(field, value)), 1);
+            return tds.scoreDocs.length != 0 ? searcher.doc(tds.scoreDocs[0].doc) : null;
+        } finally {
+            release(searcher);
+        }
+    }
+
+    /**
+     * Reopen the reader if the index has changed. Searchers acquired before stay valid until released.
+     * @return Boolean True if the searcher is current after the call.
+     * @throws IOException
+     */
+
+    public boolean maybeRefresh() throws IOException {
+        return manager.maybeRefresh();
+    }
+
+    /**
+     * Close the handle. The index files are released once all acquired searchers are released.
+     */
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (pinned != null) {
+            manager.release(pinned);
+            pinned = null;
+        }
+        manager.close();
+        directory.close();
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
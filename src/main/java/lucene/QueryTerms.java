@@ -0,0 +1,170 @@
+package lucene;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.TermQuery;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ====================================================================================================================
+ * Builds the bag-of-words queries of the experiments (one SHOULD TermQuery per token, at most 64 tokens) and keeps the
+ * most recently used ones.
+ * The same entity names are turned into queries over and over (the context entities of many mentions, the expansion
+ * entities of EntityRMExpand), so the tokens and the query of a text are kept in a bounded LRU cache shared by all
+ * threads: building the same query again is one map lookup. The size of the cache is set with
+ * "-Dquery.cache.size=N" (default 10000, 0 to disable it).
+ * Analysis uses Analyzer.tokenStream(String, String), which reuses the token stream components and the reader of the
+ * calling thread, so a miss does not create a new analysis chain either. Queries are immutable, so they are safe to
+ * share between threads.
+ * ====================================================================================================================
+ * @author Shubham Chatterjee
+ * @version 10/17/2026
+ */
+
+public class QueryTerms {
+
+    private static final int MAX_TOKENS = 64;
+    private static final int CACHE_SIZE = Integer.getInteger("query.cache.size", 10000);
+
+    private static final Map<Key, Analyzed> CACHE = new LinkedHashMap<Key, Analyzed>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Analyzed> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+
+    private QueryTerms() {
+    }
+
+    /**
+     * Tokenize a text with an analyzer.
+     * @param text String Text.
+     * @param field String Field (passed to the analyzer).
+     * @param analyzer Analyzer Analyzer.
+     * @return List The first 64 tokens (unmodifiable).
+     * @throws IOException If the text could not be analyzed.
+     */
+
+    @NotNull
+    public static List<String> tokenize(@NotNull String text, @NotNull String field, @NotNull Analyzer analyzer)
+            throws IOException {
+        return analyze(text, field, analyzer).tokens;
+    }
+
+    /**
+     * Convert a text to a query with one SHOULD TermQuery per token.
+     * @param text String Text.
+     * @param field String Field to search.
+     * @param analyzer Analyzer Analyzer.
+     * @return BooleanQuery
+     * @throws IOException If the text could not be analyzed.
+     */
+
+    @NotNull
+    public static BooleanQuery toQuery(@NotNull String text, @NotNull String field, @NotNull Analyzer analyzer)
+            throws IOException {
+        return analyze(text, field, analyzer).query;
+    }
+
+    /**
+     * Fraction of the lookups answered by the cache.
+     * @return Double
+     */
+
+    public static double getHitRate() {
+        long hits = HITS.get(), total = hits + MISSES.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @NotNull
+    private static Analyzed analyze(@NotNull String text, @NotNull String field, @NotNull Analyzer analyzer)
+            throws IOException {
+        Key key = new Key(analyzer, field, text);
+        Analyzed analyzed;
+        synchronized (CACHE) {
+            analyzed = CACHE.get(key);
+        }
+        if (analyzed != null) {
+            HITS.incrementAndGet();
+            return analyzed;
+        }
+        MISSES.incrementAndGet();
+
+        List<String> tokens = new ArrayList<>();
+        try (TokenStream tokenStream = analyzer.tokenStream(field, text)) {
+            CharTermAttribute termAttribute = tokenStream.addAttribute(CharTermAttribute.class);
+            tokenStream.reset();
+            while (tokenStream.incrementToken() && tokens.size() < MAX_TOKENS) {
+                tokens.add(termAttribute.toString());
+            }
+            tokenStream.end();
+        }
+        BooleanQuery.Builder booleanQuery = new BooleanQuery.Builder();
+        for (String token : tokens) {
+            booleanQuery.add(new TermQuery(new Term(field, token)), BooleanClause.Occur.SHOULD);
+        }
+        analyzed = new Analyzed(Collections.unmodifiableList(tokens), booleanQuery.build());
+        if (CACHE_SIZE > 0) {
+            synchronized (CACHE) {
+                CACHE.put(key, analyzed);
+            }
+        }
+        return analyzed;
+    }
+
+    /**
+     * Key of the cache: the same text gives different tokens with another analyzer or field.
+     */
+
+    private static final class Key {
+        private final Analyzer analyzer;
+        private final String field;
+        private final String text;
+        private final int hash;
+
+        Key(Analyzer analyzer, String field, String text) {
+            this.analyzer = analyzer;
+            this.field = field;
+            this.text = text;
+            this.hash = 31 * (31 * System.identityHashCode(analyzer) + field.hashCode()) + text.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return analyzer == key.analyzer && field.equals(key.field) && text.equals(key.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Analyzed {
+        private final List<String> tokens;
+        private final BooleanQuery query;
+
+        Analyzed(List<String> tokens, BooleanQuery query) {
+            this.tokens = tokens;
+            this.query = query;
+        }
+    }
+}
@@ -26,6 +26,7 @@ import java.util.Map;
  * Class to make a RAM index.
  * This class uses the Lucene 7.7.0 RAMDirectory to create in-memory indices.
  * NOTE: Use caution in the use of this class! The RAMDirectory class has been marked as deprecated by the developers.
+ * To BM25-rank the candidate aspects of a mention, use AspectScorer instead, which does not build an index.
  * @author Shubham Chatterjee
  * @version 03/11/2019
  */
@@ -0,0 +1,212 @@
+package lucene;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.similarities.Similarity;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ====================================================================================================================
+ * A size-bounded cache of top-k search results, shared by all threads.
+ * The experiments search the same entity query many times (once per mention the entity is a context entity of). The
+ * results are kept keyed by (index, query, similarity, k), so only the first search of a query runs:
+ * (1) the index is the reader (its cache key), so a reopened index does not see stale results,
+ * (2) the query is the analyzed query (see QueryTerms), compared with Query.equals(),
+ * (3) the similarity is the one of the searcher, compared by identity.
+ * Only the document ids and scores of the hits are kept, in two arrays per query; the documents are not.
+ * The number of queries kept is set with "-Dresult.cache.size=N" (default 10000, 0 to disable the cache).
+ * Only the entity queries of the pseudo-documents (Utilities.createPseudoDocument()) and the warm-up go through it;
+ * other searches (e.g., Index.Search.searchIndex()) are not cached.
+ * The cache can be filled before scoring starts with Index.Setup.warmUp().
+ * ====================================================================================================================
+ * @author Shubham Chatterjee
+ * @version 10/17/2026
+ */
+
+public class ResultCache {
+
+    private static final ResultCache INSTANCE = new ResultCache(Integer.getInteger("result.cache.size", 10000));
+
+    private final int maxSize;
+    private final Map<Key, Hits> cache;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructor.
+     * @param maxSize Integer Maximum number of queries kept (0 to disable the cache).
+     */
+
+    public ResultCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.cache = new LinkedHashMap<Key, Hits>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Hits> eldest) {
+                return size() > ResultCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get the cache shared by the searches of the experiments.
+     * @return ResultCache
+     */
+
+    @NotNull
+    public static ResultCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Search the top k hits of a query, or get them from the cache.
+     * @param searcher IndexSearcher Searcher.
+     * @param query Query Query.
+     * @param k Integer Number of top hits.
+     * @return TopDocs (a new instance on every call, so the caller may modify it).
+     * @throws IOException If the index could not be searched.
+     */
+
+    @NotNull
+    public TopDocs search(@NotNull IndexSearcher searcher, @NotNull Query query, int k) throws IOException {
+        if (maxSize <= 0) {
+            return searcher.search(query, k);
+        }
+        Key key = new Key(readerKey(searcher.getIndexReader()), query, searcher.getSimilarity(true), k);
+        Hits cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached.toTopDocs();
+        }
+        misses.incrementAndGet();
+        TopDocs topDocs = searcher.search(query, k);
+        synchronized (cache) {
+            cache.put(key, new Hits(topDocs));
+        }
+        return topDocs;
+    }
+
+    /** Number of searches answered by the cache. */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /** Number of searches that ran. */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Fraction of the searches answered by the cache.
+     * @return Double
+     */
+
+    public double getHitRate() {
+        long h = hits.get(), total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * Number of queries in the cache.
+     * @return Integer
+     */
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Remove all the results.
+     */
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Result cache: %d hits, %d misses (hit rate %.1f%%), %d queries cached",
+                getHits(), getMisses(), 100 * getHitRate(), size());
+    }
+
+    @NotNull
+    private static Object readerKey(@NotNull IndexReader reader) {
+        IndexReader.CacheHelper cacheHelper = reader.getReaderCacheHelper();
+        return cacheHelper != null ? cacheHelper.getKey() : reader;
+    }
+
+    private static final class Key {
+        private final Object reader;
+        private final Query query;
+        private final Similarity similarity;
+        private final int k;
+        private final int hash;
+
+        Key(Object reader, Query query, Similarity similarity, int k) {
+            this.reader = reader;
+            this.query = query;
+            this.similarity = similarity;
+            this.k = k;
+            this.hash = 31 * (31 * (31 * System.identityHashCode(reader) + query.hashCode())
+                    + System.identityHashCode(similarity)) + k;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return reader == key.reader && similarity == key.similarity && k == key.k && query.equals(key.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * The hits of a query: document ids and scores.
+     */
+
+    private static final class Hits {
+        private final long totalHits;
+        private final float maxScore;
+        private final int[] docs;
+        private final float[] scores;
+
+        Hits(TopDocs topDocs) {
+            totalHits = topDocs.totalHits;
+            maxScore = topDocs.getMaxScore();
+            docs = new int[topDocs.scoreDocs.length];
+            scores = new float[topDocs.scoreDocs.length];
+            for (int i = 0; i < docs.length; i++) {
+                docs[i] = topDocs.scoreDocs[i].doc;
+                scores[i] = topDocs.scoreDocs[i].score;
+            }
+        }
+
+        TopDocs toTopDocs() {
+            ScoreDoc[] scoreDocs = new ScoreDoc[docs.length];
+            for (int i = 0; i < docs.length; i++) {
+                scoreDocs[i] = new ScoreDoc(docs[i], scores[i]);
+            }
+            return new TopDocs(totalHits, scoreDocs, maxScore);
+        }
+    }
+}
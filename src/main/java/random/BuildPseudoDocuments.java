@@ -0,0 +1,142 @@
+package random;
+
+import help.PseudoDocument;
+import help.PseudoDocumentStore;
+import help.Utilities;
+import json.JsonObject;
+import json.ReadJsonlFile;
+import lucene.Index;
+import me.tongfei.progressbar.ProgressBar;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.search.*;
+import org.apache.lucene.search.similarities.Similarity;
+import org.json.simple.JSONObject;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * ====================================================================================================================
+ * Offline stage that builds the pseudo-documents the experiments need and writes them to a PseudoDocumentStore.
+ * (1) Scan the JSON-L dataset and collect every entity the experiments build a pseudo-document for:
+ *     (a) the name of the target entity (Experiment-4 and 7),
+ *     (b) the entities in the context of the target entity (Experiment-2 and 3, and the rankers in "extra").
+ * (2) Build each pseudo-document once, the same way as the experiments do (top-100 paragraphs retrieved with the
+ *     entity name as query, using the same analyzer and similarity), a bounded number of entities at a time.
+ * (3) Write them to the store file, with the index, analyzer, similarity and N they were built with. The experiments
+ *     do not use the store if they run with another setup.
+ * Run the experiments with "-Dpseudo.doc.store=FILE" to read the pseudo-documents from the store.
+ * ====================================================================================================================
+ * @author Shubham Chatterjee
+ * @version 10/17/2026
+ */
+
+public class BuildPseudoDocuments {
+    private final IndexSearcher searcher;
+    private final Analyzer analyzer;
+    private final Map<String, Map<String, Integer>> contextEntityMap;
+    private final Set<String> entities = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructor.
+     * @param indexDir String Path to the paragraph index directory.
+     * @param mainDir String Path to the top-level aspect-linking directory.
+     * @param dataDir String Path to the data directory within the mainDir.
+     * @param jsonFile String Name of the JSON-L data file (must be within dataDir).
+     * @param contextEntityFile String Name of the serialized file containing the context entities (within dataDir).
+     * @param storeFile String Path to the store file to write.
+     * @param threads Integer Maximum number of pseudo-documents built at a time.
+     * @param analyzer Analyzer Lucene analyzer (the same as used by the experiments).
+     * @param similarity Similarity Lucene similarity (the same as used by the experiments).
+     */
+
+    public BuildPseudoDocuments(String indexDir,
+                                String mainDir,
+                                String dataDir,
+                                String jsonFile,
+                                String contextEntityFile,
+                                String storeFile,
+                                int threads,
+                                Analyzer analyzer,
+                                Similarity similarity) {
+
+        String jsonFilePath = mainDir + "/" + dataDir + "/" + jsonFile;
+        String contextEntityFilePath = mainDir + "/" + dataDir + "/" + contextEntityFile;
+
+        this.analyzer = analyzer;
+
+        System.out.print("Setting up index for use...");
+        searcher = new Index.Setup(indexDir, "text", analyzer, similarity).getSearcher();
+        System.out.println("[Done].");
+
+        System.out.print("Reading the JSON-L file...");
+        List<JSONObject> jsonObjectList = ReadJsonlFile.read(jsonFilePath);
+        System.out.println("[Done].");
+        System.out.println("Found: " + jsonObjectList.size() + " JSON objects.");
+
+        System.out.print("Reading the context entity file...");
+        Map<String, Map<String, Integer>> map = new HashMap<>();
+        try {
+            map = Utilities.readMap(contextEntityFilePath);
+        } catch (IOException | ClassNotFoundException e) {
+            e.printStackTrace();
+        }
+        contextEntityMap = map;
+        System.out.println("[Done].");
+
+        for (JSONObject jsonObject : jsonObjectList) {
+            entities.add(JsonObject.getEntityName(jsonObject));
+            entities.addAll(contextEntityMap.getOrDefault(JsonObject.getEntityId(jsonObject), new HashMap<>())
+                    .keySet());
+        }
+        System.out.println("Found: " + entities.size() + " entities.");
+
+        // Build every pseudo-document from the index, even if "-Dpseudo.doc.store" is set (e.g., to this file)
+        PseudoDocumentStore.setStore(null);
+
+        long start = System.currentTimeMillis();
+        PseudoDocumentStore.Writer writer;
+        try {
+            writer = new PseudoDocumentStore.Writer(storeFile, PseudoDocumentStore.parameters(searcher, analyzer,
+                    PseudoDocument.TOP_N));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        ProgressBar pb = new ProgressBar("Building", entities.size());
+        try {
+            pool.submit(() -> entities.parallelStream().forEach(entity -> {
+                PseudoDocument pseudoDocument = Utilities.createPseudoDocument(entity, PseudoDocument.TOP_N, analyzer,
+                        searcher);
+                try {
+                    writer.add(entity, pseudoDocument);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                synchronized (pb) {
+                    pb.step();
+                }
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+        pb.close();
+        pool.shutdown();
+
+        System.out.print("Writing " + writer.size() + " pseudo-documents to " + storeFile + "...");
+        try {
+            writer.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        System.out.println("[Done].");
+        System.out.println("Time taken = " + (System.currentTimeMillis() - start) / 1000 + " s");
+    }
+
+}
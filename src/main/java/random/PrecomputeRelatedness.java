@@ -0,0 +1,299 @@
+package random;
+
+import api.RelatednessMatrix;
+import api.WATApi;
+import help.IntDoubleHashMap;
+import help.PseudoDocument;
+import help.Utilities;
+import json.JsonObject;
+import json.ReadJsonlFile;
+import lucene.Index;
+import me.tongfei.progressbar.ProgressBar;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.*;
+import org.apache.lucene.search.similarities.Similarity;
+import org.jetbrains.annotations.NotNull;
+import org.json.simple.JSONObject;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * ====================================================================================================================
+ * Offline stage that precomputes the entity relatedness needed by the relatedness-based experiments.
+ * (1) Scan the JSON-L dataset and collect every distinct (target entity, candidate entity) pair the experiments ask
+ *     WAT for:
+ *     (a) the entities in the context of the target entity (Experiment-2),
+ *     (b) the entities in the pseudo-documents of the context entities (Experiment-3),
+ *     (c) the entities in the pseudo-document of the target entity name (Experiment-4 and 7),
+ *     (d) the entities on the Wikipedia page of the target entity (Experiment-5 and 6), if a page index is given.
+ * (2) Fetch the relatedness of all pairs of a target in batched requests, a bounded number of targets at a time.
+ * (3) Write one sorted, memory-mapped matrix file "<measure>.mat" per relatedness measure.
+ * Run the experiments with "-Dwat.matrix.dir=DIR" to read the scores from the matrix instead of calling WAT.
+ * ====================================================================================================================
+ * @author Shubham Chatterjee
+ * @version 10/17/2026
+ */
+
+public class PrecomputeRelatedness {
+    private final IndexSearcher searcher;
+    private final IndexSearcher pageIndexSearcher;
+    private final Analyzer analyzer;
+    private final Map<String, Map<String, Integer>> contextEntityMap;
+    private final Map<Integer, Set<Integer>> pairs = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> pseudoDocEntities = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor.
+     * @param indexDir String Path to the paragraph index directory.
+     * @param pageIndexDir String Path to the page index directory ("none" to skip the page entities).
+     * @param mainDir String Path to the top-level aspect-linking directory.
+     * @param dataDir String Path to the data directory within the mainDir.
+     * @param jsonFile String Name of the JSON-L data file (must be within dataDir).
+     * @param contextEntityFile String Name of the serialized file containing the context entities (within dataDir).
+     * @param matrixDir String Directory where the matrix files are written.
+     * @param relTypes List of relatedness measures (mw, jaccard, lm, w2v, cp, ba, pmi).
+     * @param threads Integer Maximum number of targets processed at a time.
+     * @param analyzer Analyzer Lucene analyzer (the same as used by the experiments).
+     * @param similarity Similarity Lucene similarity (the same as used by the experiments).
+     */
+
+    public PrecomputeRelatedness(String indexDir,
+                                 String pageIndexDir,
+                                 String mainDir,
+                                 String dataDir,
+                                 String jsonFile,
+                                 String contextEntityFile,
+                                 String matrixDir,
+                                 @NotNull List<String> relTypes,
+                                 int threads,
+                                 Analyzer analyzer,
+                                 Similarity similarity) {
+
+        String jsonFilePath = mainDir + "/" + dataDir + "/" + jsonFile;
+        String contextEntityFilePath = mainDir + "/" + dataDir + "/" + contextEntityFile;
+
+        this.analyzer = analyzer;
+
+        System.out.print("Setting up index for use...");
+        searcher = new Index.Setup(indexDir, "text", analyzer, similarity).getSearcher();
+        System.out.println("[Done].");
+
+        if (pageIndexDir.equalsIgnoreCase("none")) {
+            pageIndexSearcher = null;
+        } else {
+            System.out.print("Setting up page index for use...");
+            pageIndexSearcher = new Index.Setup(pageIndexDir, "OutlinkIds", analyzer, similarity)
+                    .getSearcher();
+            System.out.println("[Done].");
+        }
+
+        System.out.print("Reading the JSON-L file...");
+        List<JSONObject> jsonObjectList = ReadJsonlFile.read(jsonFilePath);
+        System.out.println("[Done].");
+        System.out.println("Found: " + jsonObjectList.size() + " JSON objects.");
+
+        System.out.print("Reading the context entity file...");
+        Map<String, Map<String, Integer>> map = new HashMap<>();
+        try {
+            map = Utilities.readMap(contextEntityFilePath);
+        } catch (IOException | ClassNotFoundException e) {
+            e.printStackTrace();
+        }
+        contextEntityMap = map;
+        System.out.println("[Done].");
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+
+        System.out.println("Collecting entity pairs...");
+        ProgressBar pb = new ProgressBar("Collecting", jsonObjectList.size());
+        run(pool, () -> jsonObjectList.parallelStream().forEach(jsonObject -> {
+            collectPairs(jsonObject);
+            synchronized (pb) {
+                pb.step();
+            }
+        }));
+        pb.close();
+        long numPairs = pairs.values().stream().mapToLong(Set::size).sum();
+        System.out.println("Found: " + pairs.size() + " target entities and " + numPairs + " pairs.");
+
+        for (String relType : relTypes) {
+            String relMeasure = toRelMeasure(relType);
+            System.out.println("Fetching " + relMeasure + " relatedness...");
+            long start = System.currentTimeMillis();
+            PairBuffer buffer = fetch(pool, relMeasure);
+            String file = matrixDir + "/" + relMeasure + ".mat";
+            System.out.print("Writing " + buffer.size + " scores to " + file + "...");
+            try {
+                RelatednessMatrix.write(file, buffer.id1, buffer.id2, buffer.scores, buffer.size);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            System.out.println("[Done].");
+            System.out.println("Time taken = " + (System.currentTimeMillis() - start) / 1000 + " s");
+        }
+        pool.shutdown();
+    }
+
+    /**
+     * Collect the pairs for one JSON object.
+     * @param jsonObject JSONObject
+     */
+
+    private void collectPairs(JSONObject jsonObject) {
+        String entityID = JsonObject.getEntityId(jsonObject);
+        String entityName = JsonObject.getEntityName(jsonObject);
+        String idContext = JsonObject.getIdContext(jsonObject);
+
+        Map<String, Integer> targetEntityMap = contextEntityMap.getOrDefault(idContext, new HashMap<>());
+        Map<String, Integer> entityMap = contextEntityMap.getOrDefault(entityID, new HashMap<>());
+
+        // (a) Entities in the context
+        int targetId = WATApi.TitleResolver.getId(entityName);
+        for (int id : entityMap.values()) {
+            addPair(targetId, id);
+        }
+
+        // (b) Entities in the pseudo-documents of the context entities, and
+        // (c) Entities in the pseudo-document of the target entity name
+        targetId = getId(entityID, targetEntityMap);
+        List<String> entities = new ArrayList<>(entityMap.keySet());
+        entities.add(entityName);
+        for (String entity : entities) {
+            for (String e : getPseudoDocEntities(entity)) {
+                String contextEntityId = Utilities.unprocess(e);
+                if (!entityID.equalsIgnoreCase(contextEntityId)) {
+                    addPair(targetId, getId(contextEntityId, targetEntityMap));
+                }
+            }
+        }
+
+        // (d) Entities on the Wikipedia page of the target entity
+        if (pageIndexSearcher != null) {
+            String wikiEntityID = "enwiki:" + entityID;
+            try {
+                Document doc = Index.Search.searchIndex("Id", wikiEntityID, pageIndexSearcher);
+                if (doc != null && doc.getField("OutlinkIds") != null) {
+                    int pageTargetId = getId(wikiEntityID, targetEntityMap);
+                    for (String eid : doc.getField("OutlinkIds").stringValue().split("\n")) {
+                        if (!wikiEntityID.equalsIgnoreCase(eid)) {
+                            addPair(pageTargetId, getId(eid, targetEntityMap));
+                        }
+                    }
+                }
+            } catch (IOException | ParseException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void addPair(int targetId, int candidateId) {
+        if (targetId > 0 && candidateId > 0 && targetId != candidateId) {
+            pairs.computeIfAbsent(targetId, k -> ConcurrentHashMap.newKeySet()).add(candidateId);
+        }
+    }
+
+    /**
+     * Fetch the relatedness of all collected pairs.
+     * @param pool ForkJoinPool Pool bounding the number of targets fetched at a time.
+     * @param relMeasure String Relatedness measure.
+     * @return PairBuffer The scores.
+     */
+
+    @NotNull
+    private PairBuffer fetch(@NotNull ForkJoinPool pool, String relMeasure) {
+        PairBuffer buffer = new PairBuffer();
+        List<Integer> targets = new ArrayList<>(pairs.keySet());
+        ProgressBar pb = new ProgressBar("Fetching", targets.size());
+        run(pool, () -> targets.parallelStream().forEach(targetId -> {
+            int[] candidateIds = pairs.get(targetId).stream().mapToInt(Integer::intValue).toArray();
+            IntDoubleHashMap scores = WATApi.EntityRelatedness.getRelatednessBatch(relMeasure, targetId, candidateIds);
+            synchronized (buffer) {
+                for (int id : scores.keys()) {
+                    buffer.add(targetId, id, scores.get(id, 0.0d));
+                }
+                pb.step();
+            }
+        }));
+        pb.close();
+        return buffer;
+    }
+
+    private static void run(@NotNull ForkJoinPool pool, @NotNull Runnable task) {
+        try {
+            pool.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Get the entities in the pseudo-document of an entity. Pseudo-documents are built once per entity.
+     * The pseudo-document is built the same way as in the experiments: from the top-100 paragraphs retrieved with
+     * the entity name as query.
+     * @param entity String
+     * @return Set of entities.
+     */
+
+    @NotNull
+    private Set<String> getPseudoDocEntities(String entity) {
+        return pseudoDocEntities.computeIfAbsent(entity, e -> {
+            PseudoDocument pseudoDocument = Utilities.createPseudoDocument(e, PseudoDocument.TOP_N, analyzer, searcher);
+            return pseudoDocument != null
+                    ? new HashSet<>(pseudoDocument.getEntityList())
+                    : Collections.emptySet();
+        });
+    }
+
+    /**
+     * Returns the Wikipedia ID of an entity, using the IDs provided with the data if available.
+     */
+
+    private int getId(@NotNull String entityId, @NotNull Map<String, Integer> targetEntityMap) {
+        String s = entityId.substring(entityId.indexOf(":") + 1).replaceAll("%20", "_");
+        if (targetEntityMap.containsKey(s)) {
+            return targetEntityMap.get(s);
+        }
+        return WATApi.TitleResolver.getId(s);
+    }
+
+    @NotNull
+    private static String toRelMeasure(@NotNull String relType) {
+        if (relType.equalsIgnoreCase("cp")) {
+            return "conditionalprobability";
+        } else if (relType.equalsIgnoreCase("ba")) {
+            return "barabasialbert";
+        }
+        return relType.toLowerCase();
+    }
+
+    /**
+     * Growable parallel arrays of (id1, id2, score).
+     */
+
+    private static final class PairBuffer {
+        int[] id1 = new int[1024];
+        int[] id2 = new int[1024];
+        double[] scores = new double[1024];
+        int size = 0;
+
+        void add(int a, int b, double score) {
+            if (size == id1.length) {
+                int capacity = size + (size >> 1);
+                id1 = Arrays.copyOf(id1, capacity);
+                id2 = Arrays.copyOf(id2, capacity);
+                scores = Arrays.copyOf(scores, capacity);
+            }
+            id1[size] = a;
+            id2[size] = b;
+            scores[size++] = score;
+        }
+    }
+}